@@ -0,0 +1,88 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.elasticsearch.action.support.WordDelimiterActionListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analyzes titles from several threads sharing one source of dynamic protected words, like
+ * the write threads of a node during bulk indexing. Throughput per thread should stay flat
+ * as threads are added, e.g. {@code -t 1}, {@code -t 4}, {@code -t 16}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentAnalysisBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Source {
+    @Param({"10000"})
+    public int dictionarySize;
+
+    @Param({"HASH", "FST"})
+    public ProtectedWordsDictionary.Format format;
+
+    WordDelimiterActionListener words;
+    List<String> documents;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      ProtectedWordsDictionary.Builder builder = format.newBuilder();
+      Corpora.dictionary(dictionarySize).forEach(builder::add);
+      words = new WordDelimiterActionListener();
+      words.setFormat(format);
+      words.setPublished(0, builder.build());
+      documents = Corpora.documents(Corpora.Corpus.TITLES, 1_000);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Stream {
+    Tokenizer tokenizer;
+    TokenStream stream;
+
+    @Setup(Level.Trial)
+    public void setup(Source source) {
+      tokenizer = new WhitespaceTokenizer();
+      stream = new WordDelimiterFilter(tokenizer, WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE,
+          WordDelimiterFilter.GENERATE_WORD_PARTS | WordDelimiterFilter.GENERATE_NUMBER_PARTS
+              | WordDelimiterFilter.SPLIT_ON_CASE_CHANGE | WordDelimiterFilter.SPLIT_ON_NUMERICS,
+          null, source.words, 2);
+    }
+  }
+
+  @Benchmark
+  public int analyze(Source source, Stream stream) throws IOException {
+    int tokens = 0;
+    for (String document : source.documents) {
+      stream.tokenizer.setReader(new StringReader(document));
+      stream.stream.reset();
+      while (stream.stream.incrementToken()) {
+        tokens++;
+      }
+      stream.stream.end();
+      stream.stream.close();
+    }
+    return tokens;
+  }
+}
@@ -0,0 +1,138 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic e-commerce corpora for the benchmarks. Model codes are numbered, so that the
+ * first N of them can serve as a dictionary of N protected words, of which the corpora hit
+ * a known share.
+ */
+final class Corpora {
+
+  // corpora draw model codes from this range, a dictionary of 10k words protects half of them
+  static final int CODES = 20_000;
+
+  private static final String[] BRANDS = {
+      "Samsung", "Apple", "Xiaomi", "Sony", "LG", "Bosch", "Philips", "Lenovo", "ASUS", "Canon"
+  };
+  private static final String[] GREEK = {
+      "Κινητό", "Τηλέφωνο", "Τηλεόραση", "Ψυγείο", "Ντουλάπα", "Πλυντήριο", "Ρούχων", "Φακός",
+      "Ακουστικά", "Ασύρματα", "Μαύρο", "Λευκό", "Γκρι", "Σκούπα", "Οθόνη", "Φορητός", "Υπολογιστής"
+  };
+  private static final String[] LATIN = {
+      "Galaxy", "Pro", "Max", "Ultra", "Phantom", "Gray", "Wireless", "Noise", "Cancelling", "Smart",
+      "4K", "HDR", "5G", "128GB", "256GB", "Wi-Fi", "USB-C", "Dual-SIM", "No-Frost", "Inverter"
+  };
+  private static final String[] SIZES = {"XS", "S", "M", "L", "XL", "XXL"};
+  private static final String[] COLORS = {"BLK", "WHT", "RED", "NVY", "GRY"};
+
+  private Corpora() {}
+
+  enum Corpus {
+    /** model codes alone, as typed in the search box */
+    MODEL_CODES,
+    /** product titles mixing Greek and Latin words with model codes */
+    TITLES,
+    /** long merchant SKUs */
+    SKUS
+  }
+
+  /**
+   * @return the documents of {@code corpus}, whitespace separated
+   */
+  static List<String> documents(Corpus corpus, int count) {
+    Random random = new Random(42);
+    List<String> documents = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      switch (corpus) {
+        case MODEL_CODES:
+          documents.add(modelCode(random.nextInt(CODES)) + " " + modelCode(random.nextInt(CODES)));
+          break;
+        case TITLES:
+          documents.add(title(random));
+          break;
+        default:
+          documents.add(sku(random) + " " + sku(random));
+      }
+    }
+    return documents;
+  }
+
+  /**
+   * @return the first {@code size} model codes
+   */
+  static List<String> dictionary(int size) {
+    List<String> words = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      words.add(modelCode(i));
+    }
+    return words;
+  }
+
+  /**
+   * Model code number {@code i}, e.g. {@code SM-G991B}, {@code WH1000XM4} or {@code iPhone13Pro}.
+   */
+  static String modelCode(int i) {
+    Random random = new Random(i);
+    StringBuilder code = new StringBuilder();
+    switch (i % 3) {
+      case 0:
+        letters(random, code, 2, true).append('-');
+        letters(random, code, 1, true);
+        digits(random, code, 3 + random.nextInt(2));
+        letters(random, code, random.nextInt(2), true);
+        break;
+      case 1:
+        letters(random, code, 2, true);
+        digits(random, code, 4);
+        letters(random, code, 2, true);
+        digits(random, code, 1);
+        break;
+      default:
+        code.append(random.nextBoolean() ? "iPhone" : "Redmi");
+        digits(random, code, 2);
+        code.append(random.nextBoolean() ? "Pro" : "Lite");
+        digits(random, code, random.nextInt(3));
+    }
+    return code.toString();
+  }
+
+  private static String title(Random random) {
+    StringBuilder title = new StringBuilder();
+    title.append(GREEK[random.nextInt(GREEK.length)]).append(' ');
+    title.append(BRANDS[random.nextInt(BRANDS.length)]).append(' ');
+    title.append(modelCode(random.nextInt(CODES))).append(' ');
+    for (int i = 2 + random.nextInt(4); i > 0; i--) {
+      String[] words = random.nextBoolean() ? GREEK : LATIN;
+      title.append(words[random.nextInt(words.length)]).append(' ');
+    }
+    title.append('(').append(LATIN[random.nextInt(LATIN.length)]).append(')');
+    return title.toString();
+  }
+
+  private static String sku(Random random) {
+    StringBuilder sku = new StringBuilder();
+    letters(random, sku, 3, true).append('-');
+    digits(random, sku, 6).append('-');
+    sku.append(SIZES[random.nextInt(SIZES.length)]).append('/');
+    sku.append(COLORS[random.nextInt(COLORS.length)]).append('_');
+    digits(random, sku, 4);
+    return sku.toString();
+  }
+
+  private static StringBuilder letters(Random random, StringBuilder builder, int count, boolean upper) {
+    for (int i = 0; i < count; i++) {
+      builder.append((char) ((upper ? 'A' : 'a') + random.nextInt(26)));
+    }
+    return builder;
+  }
+
+  private static StringBuilder digits(Random random, StringBuilder builder, int count) {
+    for (int i = 0; i < count; i++) {
+      builder.append((char) ('0' + random.nextInt(10)));
+    }
+    return builder;
+  }
+}
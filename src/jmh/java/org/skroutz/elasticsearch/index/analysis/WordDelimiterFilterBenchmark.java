@@ -0,0 +1,155 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.miscellaneous.WordDelimiterGraphFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.elasticsearch.action.support.WordDelimiterActionListener;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.lucene.analysis.miscellaneous.WordDelimiterGraphFilter.CATENATE_ALL;
+import static org.apache.lucene.analysis.miscellaneous.WordDelimiterGraphFilter.CATENATE_NUMBERS;
+import static org.apache.lucene.analysis.miscellaneous.WordDelimiterGraphFilter.CATENATE_WORDS;
+import static org.apache.lucene.analysis.miscellaneous.WordDelimiterGraphFilter.GENERATE_NUMBER_PARTS;
+import static org.apache.lucene.analysis.miscellaneous.WordDelimiterGraphFilter.GENERATE_WORD_PARTS;
+import static org.apache.lucene.analysis.miscellaneous.WordDelimiterGraphFilter.PRESERVE_ORIGINAL;
+import static org.apache.lucene.analysis.miscellaneous.WordDelimiterGraphFilter.SPLIT_ON_CASE_CHANGE;
+import static org.apache.lucene.analysis.miscellaneous.WordDelimiterGraphFilter.SPLIT_ON_NUMERICS;
+import static org.apache.lucene.analysis.miscellaneous.WordDelimiterGraphFilter.STEM_ENGLISH_POSSESSIVE;
+
+/**
+ * Analyzes a corpus with {@link WordDelimiterFilter} and, for comparison, Lucene's stock
+ * {@link WordDelimiterGraphFilter} holding the same protected words. One operation is a pass
+ * over the whole corpus, the {@code tokens} counter reports the tokens emitted per second.
+ * Run with {@code -prof gc} and divide {@code gc.alloc.rate.norm} by {@code tokensPerPass}
+ * for the bytes allocated per token.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Thread)
+public class WordDelimiterFilterBenchmark {
+
+  private static final int DEFAULT_FLAGS = GENERATE_WORD_PARTS | GENERATE_NUMBER_PARTS | SPLIT_ON_CASE_CHANGE
+      | SPLIT_ON_NUMERICS | STEM_ENGLISH_POSSESSIVE;
+
+  public enum Flags {
+    /** the defaults of the filter */
+    DEFAULT(DEFAULT_FLAGS),
+    /** the defaults, keeping the original token too */
+    PRESERVE_ORIGINAL(DEFAULT_FLAGS | WordDelimiterGraphFilter.PRESERVE_ORIGINAL),
+    /** the defaults, adding every catenation */
+    CATENATE(DEFAULT_FLAGS | CATENATE_WORDS | CATENATE_NUMBERS | CATENATE_ALL);
+
+    final int value;
+
+    Flags(int value) {
+      this.value = value;
+    }
+  }
+
+  public enum Implementation {
+    DYNAMIC,
+    LUCENE
+  }
+
+  @Param({"MODEL_CODES", "TITLES", "SKUS"})
+  public Corpora.Corpus corpus;
+
+  @Param({"DEFAULT", "PRESERVE_ORIGINAL", "CATENATE"})
+  public Flags flags;
+
+  @Param({"0", "10000", "1000000"})
+  public int dictionarySize;
+
+  @Param({"DYNAMIC", "LUCENE"})
+  public Implementation implementation;
+
+  @Param({"HASH"})
+  public ProtectedWordsDictionary.Format format;
+
+  private List<String> documents;
+  private Tokenizer tokenizer;
+  private TokenStream stream;
+  private CharTermAttribute term;
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Tokens {
+    public long tokens;
+
+    @Setup(Level.Iteration)
+    public void clean() {
+      tokens = 0;
+    }
+  }
+
+  /**
+   * Tokens emitted by a pass, reported once per iteration as a rate of 1 per operation.
+   */
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Pass {
+    public long tokensPerPass;
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    documents = Corpora.documents(corpus, 10_000);
+    List<String> words = Corpora.dictionary(dictionarySize);
+    tokenizer = new WhitespaceTokenizer();
+
+    if (implementation == Implementation.DYNAMIC) {
+      ProtectedWordsDictionary.Builder builder = format.newBuilder();
+      words.forEach(builder::add);
+      WordDelimiterActionListener dynamicWords = new WordDelimiterActionListener();
+      dynamicWords.setFormat(format);
+      dynamicWords.setPublished(0, builder.build());
+      stream = new WordDelimiterFilter(tokenizer, WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE, flags.value,
+          null, dynamicWords, 2);
+    } else {
+      CharArraySet protectedWords = words.isEmpty() ? null : new CharArraySet(words, false);
+      stream = new WordDelimiterGraphFilter(tokenizer, flags.value, protectedWords);
+    }
+    term = stream.addAttribute(CharTermAttribute.class);
+  }
+
+  @Benchmark
+  public void analyze(Tokens tokens, Pass pass, Blackhole blackhole) throws IOException {
+    long count = 0;
+    for (String document : documents) {
+      tokenizer.setReader(new StringReader(document));
+      stream.reset();
+      while (stream.incrementToken()) {
+        blackhole.consume(term);
+        count++;
+      }
+      stream.end();
+      stream.close();
+    }
+    tokens.tokens += count;
+    pass.tokensPerPass = count;
+  }
+}
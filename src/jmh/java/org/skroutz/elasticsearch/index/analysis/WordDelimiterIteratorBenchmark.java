@@ -0,0 +1,80 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the subword boundaries of every token of a corpus with {@link WordDelimiterIterator},
+ * without the attribute handling of the filter. One operation is a pass over the corpus.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WordDelimiterIteratorBenchmark {
+
+  @Param({"MODEL_CODES", "TITLES", "SKUS"})
+  public Corpora.Corpus corpus;
+
+  /** types of the first 256 chars only, or of the whole BMP */
+  @Param({"DEFAULT", "BMP"})
+  public String table;
+
+  private char[][] tokens;
+  private WordDelimiterIterator iterator;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    List<char[]> split = new ArrayList<>();
+    for (String document : Corpora.documents(corpus, 10_000)) {
+      for (String token : document.split(" ")) {
+        split.add(token.toCharArray());
+      }
+    }
+    tokens = split.toArray(new char[0][]);
+    iterator = new WordDelimiterIterator("BMP".equals(table) ?
+        WordDelimiterIterator.BMP_WORD_DELIM_TABLE : WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE, true, true, true);
+  }
+
+  @Benchmark
+  public int subwords() {
+    int subwords = 0;
+    for (char[] token : tokens) {
+      iterator.setText(token, token.length);
+      while (iterator.next() != WordDelimiterIterator.DONE) {
+        subwords += iterator.type();
+      }
+    }
+    return subwords;
+  }
+
+  /**
+   * Counts the tokens the fast path of the filter returns without running the iterator.
+   */
+  @Benchmark
+  public int plainWords() {
+    int plain = 0;
+    for (char[] token : tokens) {
+      if (iterator.isPlainWord(token, token.length)) {
+        plain++;
+      }
+    }
+    return plain;
+  }
+}
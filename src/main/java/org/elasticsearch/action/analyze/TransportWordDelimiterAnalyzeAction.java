@@ -0,0 +1,145 @@
+package org.elasticsearch.action.analyze;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.WordDelimiterActionListener;
+import org.elasticsearch.action.support.single.shard.TransportSingleShardAction;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.block.ClusterBlockException;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.routing.ShardsIterator;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.index.analysis.AnalyzerComponentsProvider;
+import org.elasticsearch.index.analysis.NamedAnalyzer;
+import org.elasticsearch.index.analysis.TokenFilterFactory;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+import org.skroutz.elasticsearch.index.analysis.WordDelimiterTokenFilterFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Analyzes a batch of texts on the analyze thread pool of a node holding a copy of the index,
+ * tagging the tokens of every text with the version of the protected words used.
+ */
+public class TransportWordDelimiterAnalyzeAction extends TransportSingleShardAction<WordDelimiterAnalyzeRequest,
+    WordDelimiterAnalyzeResponse> {
+
+  static final int MAX_ANALYZE_ATTEMPTS = 3;
+
+  private final IndicesService indicesService;
+
+  @Inject
+  public TransportWordDelimiterAnalyzeAction(ThreadPool threadPool, ClusterService clusterService,
+                                             TransportService transportService, IndicesService indicesService,
+                                             ActionFilters actionFilters,
+                                             IndexNameExpressionResolver indexNameExpressionResolver) {
+    super(WordDelimiterAnalyzeAction.NAME, threadPool, clusterService, transportService, actionFilters,
+        indexNameExpressionResolver, WordDelimiterAnalyzeRequest::new, ThreadPool.Names.ANALYZE);
+    this.indicesService = indicesService;
+  }
+
+  @Override
+  protected Writeable.Reader<WordDelimiterAnalyzeResponse> getResponseReader() {
+    return WordDelimiterAnalyzeResponse::new;
+  }
+
+  @Override
+  protected boolean resolveIndex(WordDelimiterAnalyzeRequest request) {
+    return true;
+  }
+
+  @Override
+  protected ClusterBlockException checkRequestBlock(ClusterState state, InternalRequest request) {
+    return state.blocks().indexBlockedException(ClusterBlockLevel.READ, request.concreteIndex());
+  }
+
+  @Override
+  protected ShardsIterator shards(ClusterState state, InternalRequest request) {
+    // any copy has the analyzers of the index, spread the batches over them
+    return state.routingTable().index(request.concreteIndex()).randomAllActiveShardsIt();
+  }
+
+  @Override
+  protected WordDelimiterAnalyzeResponse shardOperation(WordDelimiterAnalyzeRequest request, ShardId shardId)
+      throws IOException {
+    NamedAnalyzer analyzer = indicesService.indexServiceSafe(shardId.getIndex()).getIndexAnalyzers()
+        .get(request.analyzer());
+    if (analyzer == null) {
+      throw new IllegalArgumentException("failed to find analyzer [" + request.analyzer() + "]");
+    }
+    WordDelimiterActionListener words = dynamicWords(analyzer, request.filter());
+
+    List<WordDelimiterAnalyzeResponse.Result> results = new ArrayList<>(request.texts().size());
+    for (String text : request.texts()) {
+      results.add(analyze(analyzer, words, text));
+    }
+    return new WordDelimiterAnalyzeResponse(results);
+  }
+
+  private static WordDelimiterActionListener dynamicWords(NamedAnalyzer analyzer, String filter) {
+    List<WordDelimiterTokenFilterFactory> found = new ArrayList<>();
+    if (analyzer.analyzer() instanceof AnalyzerComponentsProvider) {
+      for (TokenFilterFactory factory : ((AnalyzerComponentsProvider) analyzer.analyzer()).getComponents().getTokenFilters()) {
+        if (factory instanceof WordDelimiterTokenFilterFactory && (filter == null || filter.equals(factory.name()))) {
+          found.add((WordDelimiterTokenFilterFactory) factory);
+        }
+      }
+    }
+    if (found.isEmpty()) {
+      throw new IllegalArgumentException("analyzer [" + analyzer.name() + "] has no dynamic_word_delimiter filter" +
+          (filter == null ? "" : " [" + filter + "]"));
+    }
+    if (found.size() > 1) {
+      throw new IllegalArgumentException("analyzer [" + analyzer.name() + "] has several dynamic_word_delimiter " +
+          "filters, set the filter to tag the results with");
+    }
+    return found.get(0).getDynamicWords();
+  }
+
+  /**
+   * Analyzes a text again if the words were replaced meanwhile, so that its tokens were all
+   * split with the version they are tagged with. Gives up after {@link #MAX_ANALYZE_ATTEMPTS}, so a
+   * long text is not analyzed over and over while its source refreshes often.
+   */
+  private static WordDelimiterAnalyzeResponse.Result analyze(Analyzer analyzer, WordDelimiterActionListener words,
+                                                            String text) throws IOException {
+    for (int attempt = 0; attempt < MAX_ANALYZE_ATTEMPTS; attempt++) {
+      long version = words.version();
+      List<WordDelimiterAnalyzeResponse.Token> tokens = new ArrayList<>();
+      try (TokenStream stream = analyzer.tokenStream("", text)) {
+        CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+        OffsetAttribute offset = stream.addAttribute(OffsetAttribute.class);
+        PositionIncrementAttribute posInc = stream.addAttribute(PositionIncrementAttribute.class);
+        TypeAttribute type = stream.addAttribute(TypeAttribute.class);
+        int position = -1;
+        stream.reset();
+        while (stream.incrementToken()) {
+          position += posInc.getPositionIncrement();
+          tokens.add(new WordDelimiterAnalyzeResponse.Token(term.toString(), offset.startOffset(), offset.endOffset(),
+              position, type.type()));
+        }
+        stream.end();
+      }
+      if (words.version() == version) {
+        return new WordDelimiterAnalyzeResponse.Result(version, tokens);
+      }
+    }
+    throw new ElasticsearchStatusException("the protected words changed while analyzing a text [{}] times in a row, " +
+        "retry later", RestStatus.SERVICE_UNAVAILABLE, MAX_ANALYZE_ATTEMPTS);
+  }
+}
@@ -0,0 +1,13 @@
+package org.elasticsearch.action.analyze;
+
+import org.elasticsearch.action.ActionType;
+
+public class WordDelimiterAnalyzeAction extends ActionType<WordDelimiterAnalyzeResponse> {
+
+  public static final WordDelimiterAnalyzeAction INSTANCE = new WordDelimiterAnalyzeAction();
+  public static final String NAME = "indices:admin/dynamic_word_delimiter/analyze";
+
+  private WordDelimiterAnalyzeAction() {
+    super(NAME, WordDelimiterAnalyzeResponse::new);
+  }
+}
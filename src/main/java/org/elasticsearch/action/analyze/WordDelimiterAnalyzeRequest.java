@@ -0,0 +1,85 @@
+package org.elasticsearch.action.analyze;
+
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.support.single.shard.SingleShardRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.elasticsearch.action.ValidateActions.addValidationError;
+
+/**
+ * Analyzes a batch of texts with an analyzer of an index that uses a {@code dynamic_word_delimiter}
+ * filter, on a node holding a copy of the index.
+ */
+public class WordDelimiterAnalyzeRequest extends SingleShardRequest<WordDelimiterAnalyzeRequest> {
+
+  private String analyzer;
+  private String filter;
+  private List<String> texts = new ArrayList<>();
+
+  public WordDelimiterAnalyzeRequest(String index) {
+    super(index);
+  }
+
+  public WordDelimiterAnalyzeRequest(StreamInput in) throws IOException {
+    super(in);
+    analyzer = in.readString();
+    filter = in.readOptionalString();
+    texts = in.readStringList();
+  }
+
+  public String analyzer() {
+    return analyzer;
+  }
+
+  public WordDelimiterAnalyzeRequest analyzer(String analyzer) {
+    this.analyzer = analyzer;
+    return this;
+  }
+
+  /**
+   * @return the {@code dynamic_word_delimiter} filter whose words version the results are tagged
+   *         with, {@code null} if the analyzer has a single one
+   */
+  public String filter() {
+    return filter;
+  }
+
+  public WordDelimiterAnalyzeRequest filter(String filter) {
+    this.filter = filter;
+    return this;
+  }
+
+  public List<String> texts() {
+    return texts;
+  }
+
+  public WordDelimiterAnalyzeRequest texts(List<String> texts) {
+    this.texts = texts;
+    return this;
+  }
+
+  @Override
+  public ActionRequestValidationException validate() {
+    ActionRequestValidationException validationException = validateNonNullIndex();
+    if (analyzer == null) {
+      validationException = addValidationError("analyzer is missing", validationException);
+    }
+    if (texts.isEmpty()) {
+      validationException = addValidationError("texts are missing", validationException);
+    }
+    return validationException;
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    super.writeTo(out);
+    out.writeString(analyzer);
+    out.writeOptionalString(filter);
+    out.writeStringCollection(texts);
+  }
+}
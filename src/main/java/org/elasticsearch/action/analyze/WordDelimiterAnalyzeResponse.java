@@ -0,0 +1,155 @@
+package org.elasticsearch.action.analyze;
+
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The tokens of every text of a {@link WordDelimiterAnalyzeRequest}, in order.
+ */
+public class WordDelimiterAnalyzeResponse extends ActionResponse implements ToXContentObject {
+
+  private final List<Result> results;
+
+  public WordDelimiterAnalyzeResponse(List<Result> results) {
+    this.results = results;
+  }
+
+  public WordDelimiterAnalyzeResponse(StreamInput in) throws IOException {
+    super(in);
+    this.results = in.readList(Result::new);
+  }
+
+  public List<Result> getResults() {
+    return results;
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    out.writeList(results);
+  }
+
+  @Override
+  public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+    builder.startObject();
+    builder.startArray("results");
+    for (Result result : results) {
+      result.toXContent(builder, params);
+    }
+    builder.endArray();
+    return builder.endObject();
+  }
+
+  /**
+   * The tokens of one text, and the version of the protected words they were split with.
+   */
+  public static class Result implements Writeable, ToXContentObject {
+    private final long version;
+    private final List<Token> tokens;
+
+    public Result(long version, List<Token> tokens) {
+      this.version = version;
+      this.tokens = tokens;
+    }
+
+    Result(StreamInput in) throws IOException {
+      this(in.readVLong(), in.readList(Token::new));
+    }
+
+    /**
+     * @return the version of the words, as in the stats of their source
+     */
+    public long getVersion() {
+      return version;
+    }
+
+    public List<Token> getTokens() {
+      return tokens;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+      out.writeVLong(version);
+      out.writeList(tokens);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+      builder.startObject();
+      builder.field("version", version);
+      builder.startArray("tokens");
+      for (Token token : tokens) {
+        token.toXContent(builder, params);
+      }
+      builder.endArray();
+      return builder.endObject();
+    }
+  }
+
+  public static class Token implements Writeable, ToXContentObject {
+    private final String term;
+    private final int startOffset;
+    private final int endOffset;
+    private final int position;
+    private final String type;
+
+    public Token(String term, int startOffset, int endOffset, int position, String type) {
+      this.term = term;
+      this.startOffset = startOffset;
+      this.endOffset = endOffset;
+      this.position = position;
+      this.type = type;
+    }
+
+    Token(StreamInput in) throws IOException {
+      this(in.readString(), in.readVInt(), in.readVInt(), in.readInt(), in.readString());
+    }
+
+    public String getTerm() {
+      return term;
+    }
+
+    public int getStartOffset() {
+      return startOffset;
+    }
+
+    public int getEndOffset() {
+      return endOffset;
+    }
+
+    public int getPosition() {
+      return position;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+      out.writeString(term);
+      out.writeVInt(startOffset);
+      out.writeVInt(endOffset);
+      out.writeInt(position);
+      out.writeString(type);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+      // same fields as the tokens of _analyze
+      builder.startObject();
+      builder.field("token", term);
+      builder.field("start_offset", startOffset);
+      builder.field("end_offset", endOffset);
+      builder.field("type", type);
+      builder.field("position", position);
+      return builder.endObject();
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package org.elasticsearch.action.stats;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.ProtectedWordsSources;
+import org.elasticsearch.action.support.ProtectedWordsStats;
+import org.elasticsearch.action.support.SplitCacheStats;
+import org.elasticsearch.action.support.SplitCaches;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TransportWordDelimiterStatsAction extends TransportNodesAction<WordDelimiterStatsRequest,
+    WordDelimiterStatsResponse, TransportWordDelimiterStatsAction.NodeRequest, WordDelimiterNodeStats> {
+
+  @Inject
+  public TransportWordDelimiterStatsAction(ThreadPool threadPool, ClusterService clusterService,
+                                           TransportService transportService, ActionFilters actionFilters) {
+    super(WordDelimiterStatsAction.NAME, threadPool, clusterService, transportService, actionFilters,
+        WordDelimiterStatsRequest::new, NodeRequest::new, ThreadPool.Names.MANAGEMENT, WordDelimiterNodeStats.class);
+  }
+
+  @Override
+  protected WordDelimiterStatsResponse newResponse(WordDelimiterStatsRequest request, List<WordDelimiterNodeStats> nodes,
+                                                   List<FailedNodeException> failures) {
+    return new WordDelimiterStatsResponse(clusterService.getClusterName(), nodes, failures);
+  }
+
+  @Override
+  protected NodeRequest newNodeRequest(WordDelimiterStatsRequest request) {
+    return new NodeRequest();
+  }
+
+  @Override
+  protected WordDelimiterNodeStats newNodeResponse(StreamInput in) throws IOException {
+    return new WordDelimiterNodeStats(in);
+  }
+
+  @Override
+  protected WordDelimiterNodeStats nodeOperation(NodeRequest request) {
+    Map<String, ProtectedWordsStats> sources = new HashMap<>();
+    ProtectedWordsSources.active().forEach((index, words) -> sources.put(index, words.stats()));
+    ProtectedWordsSources.files().forEach((file, words) -> sources.put(file.toString(), words.stats()));
+    Map<String, SplitCacheStats> splitCaches = new HashMap<>();
+    SplitCaches.active().forEach((name, cache) -> splitCaches.put(name, cache.stats()));
+    return new WordDelimiterNodeStats(clusterService.localNode(), sources, splitCaches);
+  }
+
+  public static class NodeRequest extends BaseNodeRequest {
+
+    public NodeRequest() {}
+
+    public NodeRequest(StreamInput in) throws IOException {
+      super(in);
+    }
+  }
+}
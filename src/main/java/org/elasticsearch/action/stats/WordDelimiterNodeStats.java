@@ -0,0 +1,73 @@
+package org.elasticsearch.action.stats;
+
+import org.elasticsearch.action.support.ProtectedWordsStats;
+import org.elasticsearch.action.support.SplitCacheStats;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistics of the protected words of every source index in use on a node, and of the split
+ * caches of its filters.
+ */
+public class WordDelimiterNodeStats extends BaseNodeResponse implements ToXContentFragment {
+
+  private final Map<String, ProtectedWordsStats> sources;
+  // by "index/filter"
+  private final Map<String, SplitCacheStats> splitCaches;
+
+  public WordDelimiterNodeStats(DiscoveryNode node, Map<String, ProtectedWordsStats> sources,
+                                Map<String, SplitCacheStats> splitCaches) {
+    super(node);
+    this.sources = new TreeMap<>(sources);
+    this.splitCaches = new TreeMap<>(splitCaches);
+  }
+
+  public WordDelimiterNodeStats(StreamInput in) throws IOException {
+    super(in);
+    this.sources = new TreeMap<>(in.readMap(StreamInput::readString, ProtectedWordsStats::new));
+    this.splitCaches = new TreeMap<>(in.readMap(StreamInput::readString, SplitCacheStats::new));
+  }
+
+  public Map<String, ProtectedWordsStats> getSources() {
+    return sources;
+  }
+
+  public Map<String, SplitCacheStats> getSplitCaches() {
+    return splitCaches;
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    super.writeTo(out);
+    out.writeMap(sources, StreamOutput::writeString, (o, stats) -> stats.writeTo(o));
+    out.writeMap(splitCaches, StreamOutput::writeString, (o, stats) -> stats.writeTo(o));
+  }
+
+  @Override
+  public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+    builder.field("name", getNode().getName());
+    builder.startObject("sources");
+    for (Map.Entry<String, ProtectedWordsStats> source : sources.entrySet()) {
+      builder.startObject(source.getKey());
+      source.getValue().toXContent(builder, params);
+      builder.endObject();
+    }
+    builder.endObject();
+    builder.startObject("split_caches");
+    for (Map.Entry<String, SplitCacheStats> cache : splitCaches.entrySet()) {
+      builder.startObject(cache.getKey());
+      cache.getValue().toXContent(builder, params);
+      builder.endObject();
+    }
+    builder.endObject();
+    return builder;
+  }
+}
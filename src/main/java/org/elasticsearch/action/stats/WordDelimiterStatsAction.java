@@ -0,0 +1,13 @@
+package org.elasticsearch.action.stats;
+
+import org.elasticsearch.action.ActionType;
+
+public class WordDelimiterStatsAction extends ActionType<WordDelimiterStatsResponse> {
+
+  public static final WordDelimiterStatsAction INSTANCE = new WordDelimiterStatsAction();
+  public static final String NAME = "cluster:monitor/dynamic_word_delimiter/stats";
+
+  private WordDelimiterStatsAction() {
+    super(NAME, WordDelimiterStatsResponse::new);
+  }
+}
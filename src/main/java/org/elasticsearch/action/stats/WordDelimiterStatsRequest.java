@@ -0,0 +1,20 @@
+package org.elasticsearch.action.stats;
+
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+
+import java.io.IOException;
+
+/**
+ * Asks the given nodes, or all of them, for the statistics of their protected words.
+ */
+public class WordDelimiterStatsRequest extends BaseNodesRequest<WordDelimiterStatsRequest> {
+
+  public WordDelimiterStatsRequest(String... nodesIds) {
+    super(nodesIds);
+  }
+
+  public WordDelimiterStatsRequest(StreamInput in) throws IOException {
+    super(in);
+  }
+}
@@ -0,0 +1,46 @@
+package org.elasticsearch.action.stats;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+public class WordDelimiterStatsResponse extends BaseNodesResponse<WordDelimiterNodeStats> implements ToXContentFragment {
+
+  public WordDelimiterStatsResponse(StreamInput in) throws IOException {
+    super(in);
+  }
+
+  public WordDelimiterStatsResponse(ClusterName clusterName, List<WordDelimiterNodeStats> nodes,
+                                    List<FailedNodeException> failures) {
+    super(clusterName, nodes, failures);
+  }
+
+  @Override
+  protected List<WordDelimiterNodeStats> readNodesFrom(StreamInput in) throws IOException {
+    return in.readList(WordDelimiterNodeStats::new);
+  }
+
+  @Override
+  protected void writeNodesTo(StreamOutput out, List<WordDelimiterNodeStats> nodes) throws IOException {
+    out.writeList(nodes);
+  }
+
+  @Override
+  public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+    builder.startObject("nodes");
+    for (WordDelimiterNodeStats node : getNodes()) {
+      builder.startObject(node.getNode().getId());
+      node.toXContent(builder, params);
+      builder.endObject();
+    }
+    builder.endObject();
+    return builder;
+  }
+}
@@ -0,0 +1,247 @@
+package org.elasticsearch.action.support;
+
+import org.skroutz.elasticsearch.index.analysis.ProtectedWordsDictionary;
+import org.skroutz.elasticsearch.index.analysis.ProtectedWordsNormalizer;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * Registry of the indices, and files, that dynamic protected words are loaded from. Filters
+ * naming the same source share one {@link WordDelimiterActionListener}, which is kept as long
+ * as an index using one of those filters lives on the node.
+ */
+public final class ProtectedWordsSources {
+
+  private static final Map<String, Source> sources = new HashMap<>();
+  private static final Map<Path, Source> files = new HashMap<>();
+  private static ProtectedWordsDictionary.Format format = ProtectedWordsDictionary.Format.HASH;
+  private static ProtectedWordsNormalizer normalizer = ProtectedWordsNormalizer.NONE;
+  // fills new sources with words saved by a previous run of the node
+  private static BiConsumer<String, WordDelimiterActionListener> restorer = (index, words) -> {};
+  // runs the restores and file loads of new sources, outside the lock
+  private static Executor executor = Runnable::run;
+  // fills new file sources with the words of their file
+  private static BiConsumer<Path, WordDelimiterActionListener> fileLoader = (file, words) -> {};
+
+  private ProtectedWordsSources() {}
+
+  /**
+   * Returns the words loaded from {@code index}, registering it as a source if it is not one yet.
+   * The words of a new source are restored in the background, see {@link #setExecutor(Executor)},
+   * and are empty until then.
+   *
+   * @param owner UUID of the index whose analysis uses the words, see {@link #release(String)}
+   */
+  public static WordDelimiterActionListener acquire(String index, String owner) {
+    WordDelimiterActionListener words;
+    BiConsumer<String, WordDelimiterActionListener> restorer;
+    Executor executor;
+    synchronized (ProtectedWordsSources.class) {
+      Source source = sources.get(index);
+      if (source != null) {
+        source.owners.add(owner);
+        return source.words;
+      }
+      words = newWords();
+      source = new Source(words);
+      source.owners.add(owner);
+      sources.put(index, source);
+      restorer = ProtectedWordsSources.restorer;
+      executor = ProtectedWordsSources.executor;
+    }
+    executor.execute(() -> restorer.accept(index, words));
+    return words;
+  }
+
+  /**
+   * Returns the words loaded from {@code index} without registering an owner, for analyzers that
+   * are not bound to an index and so are never released, e.g. the custom ones of _analyze requests.
+   * If no filter uses the index, the words saved by the node are restored, outside the lock, and
+   * returned but not refreshed.
+   */
+  public static WordDelimiterActionListener lookup(String index) {
+    WordDelimiterActionListener words;
+    BiConsumer<String, WordDelimiterActionListener> restorer;
+    synchronized (ProtectedWordsSources.class) {
+      Source source = sources.get(index);
+      if (source != null) {
+        return source.words;
+      }
+      words = newWords();
+      restorer = ProtectedWordsSources.restorer;
+    }
+    restorer.accept(index, words);
+    return words;
+  }
+
+  /**
+   * Returns the words loaded from {@code file}, registering it as a source if it is not one yet.
+   * File sources are not refreshed from the cluster, see {@link #setFileLoader(BiConsumer)}. A new
+   * source is loaded in the background, like restored ones, and failures to read it are counted
+   * in its stats.
+   *
+   * @param file absolute and normalized path of the file
+   * @param owner UUID of the index whose analysis uses the words, see {@link #release(String)}
+   */
+  public static WordDelimiterActionListener acquireFile(Path file, String owner) {
+    WordDelimiterActionListener words;
+    BiConsumer<Path, WordDelimiterActionListener> fileLoader;
+    Executor executor;
+    synchronized (ProtectedWordsSources.class) {
+      Source source = files.get(file);
+      if (source != null) {
+        source.owners.add(owner);
+        return source.words;
+      }
+      words = newWords();
+      source = new Source(words);
+      source.owners.add(owner);
+      files.put(file, source);
+      fileLoader = ProtectedWordsSources.fileLoader;
+      executor = ProtectedWordsSources.executor;
+    }
+    executor.execute(() -> {
+      try {
+        fileLoader.accept(file, words);
+      } catch (RuntimeException e) {
+        words.onFailure(e);
+      }
+    });
+    return words;
+  }
+
+  /**
+   * Returns the words loaded from {@code file} without registering an owner, see {@link #lookup(String)}.
+   * If no filter uses the file, it is read once, outside the lock, and not watched.
+   */
+  public static WordDelimiterActionListener lookupFile(Path file) {
+    WordDelimiterActionListener words;
+    BiConsumer<Path, WordDelimiterActionListener> fileLoader;
+    synchronized (ProtectedWordsSources.class) {
+      Source source = files.get(file);
+      if (source != null) {
+        return source.words;
+      }
+      words = newWords();
+      fileLoader = ProtectedWordsSources.fileLoader;
+    }
+    fileLoader.accept(file, words);
+    return words;
+  }
+
+  private static WordDelimiterActionListener newWords() {
+    WordDelimiterActionListener words = new WordDelimiterActionListener();
+    words.setFormat(format);
+    words.setNormalizer(normalizer);
+    return words;
+  }
+
+  /**
+   * Drops the references held by the analysis of an index that was removed from the node. The
+   * words of sources that are no longer referenced are released and stop being refreshed.
+   */
+  public static synchronized void release(String owner) {
+    sources.values().removeIf(source -> source.owners.remove(owner) && source.owners.isEmpty());
+    files.values().removeIf(source -> source.owners.remove(owner) && source.owners.isEmpty());
+  }
+
+  /**
+   * @return UUIDs of the indices whose analysis uses any of the sources
+   */
+  public static synchronized Set<String> owners() {
+    Set<String> owners = new HashSet<>();
+    sources.values().forEach(source -> owners.addAll(source.owners));
+    files.values().forEach(source -> owners.addAll(source.owners));
+    return owners;
+  }
+
+  /**
+   * @return the words loaded from {@code index}, or {@code null} if no filter uses it
+   */
+  public static synchronized WordDelimiterActionListener get(String index) {
+    Source source = sources.get(index);
+    return source == null ? null : source.words;
+  }
+
+  /**
+   * @return the source indices in use and their words
+   */
+  public static synchronized Map<String, WordDelimiterActionListener> active() {
+    Map<String, WordDelimiterActionListener> active = new HashMap<>();
+    sources.forEach((index, source) -> active.put(index, source.words));
+    return active;
+  }
+
+  /**
+   * @return the source files in use and their words
+   */
+  public static synchronized Map<Path, WordDelimiterActionListener> files() {
+    Map<Path, WordDelimiterActionListener> active = new HashMap<>();
+    files.forEach((file, source) -> active.put(file, source.words));
+    return active;
+  }
+
+  /**
+   * Sets the representation used by every source from its next refresh on.
+   */
+  public static synchronized void setFormat(ProtectedWordsDictionary.Format format) {
+    ProtectedWordsSources.format = format;
+    for (Source source : sources.values()) {
+      source.words.setFormat(format);
+    }
+    for (Source source : files.values()) {
+      source.words.setFormat(format);
+    }
+  }
+
+  /**
+   * Sets the normalization of the words of every source, reloading them in full on their next refresh.
+   */
+  public static synchronized void setNormalizer(ProtectedWordsNormalizer normalizer) {
+    ProtectedWordsSources.normalizer = normalizer;
+    for (Source source : sources.values()) {
+      source.words.setNormalizer(normalizer);
+    }
+    for (Source source : files.values()) {
+      source.words.setNormalizer(normalizer);
+    }
+  }
+
+  /**
+   * Sets how new sources are filled before their first refresh.
+   */
+  public static synchronized void setRestorer(BiConsumer<String, WordDelimiterActionListener> restorer) {
+    ProtectedWordsSources.restorer = restorer;
+  }
+
+  /**
+   * Sets where the words of new sources are restored or loaded, e.g. the thread pool of the plugin,
+   * so that filters created while a cluster state is applied do not wait for them.
+   */
+  public static synchronized void setExecutor(Executor executor) {
+    ProtectedWordsSources.executor = executor;
+  }
+
+  /**
+   * Sets how new file sources are filled. The loader may throw if the file cannot be read.
+   */
+  public static synchronized void setFileLoader(BiConsumer<Path, WordDelimiterActionListener> fileLoader) {
+    ProtectedWordsSources.fileLoader = fileLoader;
+  }
+
+  private static final class Source {
+    final WordDelimiterActionListener words;
+    // UUIDs of the indices whose filters use this source
+    final Set<String> owners = new HashSet<>();
+
+    Source(WordDelimiterActionListener words) {
+      this.words = words;
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package org.elasticsearch.action.support;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+
+/**
+ * Point in time statistics of the protected words of one source index on one node.
+ */
+public class ProtectedWordsStats implements Writeable, ToXContentFragment {
+
+  /** Upper bounds, in milliseconds, of the buckets of the refresh duration histogram; the last one is unbounded */
+  static final long[] DURATION_BUCKETS = {100, 1_000, 10_000, 60_000};
+  private static final String[] DURATION_BUCKET_NAMES = {"lt_100ms", "lt_1s", "lt_10s", "lt_1m", "gte_1m"};
+
+  private final long version;
+  private final int size;
+  private final long heapBytes;
+  private final long lastRefresh;
+  private final long lastRefreshDuration;
+  private final long refreshes;
+  private final long skipped;
+  private final long[] durations;
+  private final long failures;
+  private final String lastFailure;
+
+  ProtectedWordsStats(long version, int size, long heapBytes, long lastRefresh, long lastRefreshDuration,
+                      long refreshes, long skipped, long[] durations, long failures, String lastFailure) {
+    this.version = version;
+    this.size = size;
+    this.heapBytes = heapBytes;
+    this.lastRefresh = lastRefresh;
+    this.lastRefreshDuration = lastRefreshDuration;
+    this.refreshes = refreshes;
+    this.skipped = skipped;
+    this.durations = durations;
+    this.failures = failures;
+    this.lastFailure = lastFailure;
+  }
+
+  public ProtectedWordsStats(StreamInput in) throws IOException {
+    this(in.readVLong(), in.readVInt(), in.readVLong(), in.readZLong(), in.readZLong(), in.readVLong(),
+        in.readVLong(), in.readVLongArray(), in.readVLong(), in.readOptionalString());
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    out.writeVLong(version);
+    out.writeVInt(size);
+    out.writeVLong(heapBytes);
+    out.writeZLong(lastRefresh);
+    out.writeZLong(lastRefreshDuration);
+    out.writeVLong(refreshes);
+    out.writeVLong(skipped);
+    out.writeVLongArray(durations);
+    out.writeVLong(failures);
+    out.writeOptionalString(lastFailure);
+  }
+
+  /**
+   * @return the version of the words: the published one when synced through the cluster state,
+   *         otherwise the number of times they changed on this node
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public long getHeapBytes() {
+    return heapBytes;
+  }
+
+  /**
+   * @return epoch milliseconds of the last successful refresh, or of the last one skipped as the
+   *         words were up to date, or -1
+   */
+  public long getLastRefresh() {
+    return lastRefresh;
+  }
+
+  public long getRefreshes() {
+    return refreshes;
+  }
+
+  /**
+   * @return the number of refreshes skipped because the source index did not change
+   */
+  public long getSkipped() {
+    return skipped;
+  }
+
+  public long getFailures() {
+    return failures;
+  }
+
+  @Override
+  public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+    builder.field("version", version);
+    builder.field("size", size);
+    builder.humanReadableField("heap_size_in_bytes", "heap_size", new ByteSizeValue(heapBytes));
+    if (lastRefresh >= 0) {
+      builder.timeField("last_refresh_millis", "last_refresh", lastRefresh);
+    }
+    if (lastRefreshDuration >= 0) {
+      builder.humanReadableField("last_refresh_duration_in_millis", "last_refresh_duration",
+          TimeValue.timeValueMillis(lastRefreshDuration));
+    }
+    builder.field("refreshes", refreshes);
+    builder.field("skipped_refreshes", skipped);
+    builder.startObject("refresh_duration_histogram");
+    for (int i = 0; i < durations.length; i++) {
+      builder.field(DURATION_BUCKET_NAMES[i], durations[i]);
+    }
+    builder.endObject();
+    builder.field("failures", failures);
+    if (lastFailure != null) {
+      builder.field("last_failure", lastFailure);
+    }
+    return builder;
+  }
+}
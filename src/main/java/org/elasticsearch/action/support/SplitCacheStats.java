@@ -0,0 +1,68 @@
+package org.elasticsearch.action.support;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+
+/**
+ * Point in time statistics of the split cache of one filter on one node.
+ */
+public class SplitCacheStats implements Writeable, ToXContentFragment {
+
+  private final int size;
+  private final long hits;
+  private final long misses;
+  private final long evictions;
+
+  public SplitCacheStats(int size, long hits, long misses, long evictions) {
+    this.size = size;
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+  }
+
+  public SplitCacheStats(StreamInput in) throws IOException {
+    this(in.readVInt(), in.readVLong(), in.readVLong(), in.readVLong());
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    out.writeVInt(size);
+    out.writeVLong(hits);
+    out.writeVLong(misses);
+    out.writeVLong(evictions);
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return the fraction of lookups that were hits, 0 before the first lookup
+   */
+  public double getHitRate() {
+    return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+  }
+
+  @Override
+  public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+    builder.field("size", size);
+    builder.field("hits", hits);
+    builder.field("misses", misses);
+    builder.field("hit_rate", getHitRate());
+    builder.field("evictions", evictions);
+    return builder;
+  }
+}
@@ -0,0 +1,42 @@
+package org.elasticsearch.action.support;
+
+import org.skroutz.elasticsearch.index.analysis.SplitCache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of the split caches of the filters of the indices on the node, for the stats. A cache
+ * is registered when the analysis of its index is built and released with the index.
+ */
+public final class SplitCaches {
+
+  // index UUID => "index/filter" => cache
+  private static final Map<String, Map<String, SplitCache>> caches = new HashMap<>();
+
+  private SplitCaches() {}
+
+  /**
+   * @param owner UUID of the index whose filter uses the cache, see {@link #release(String)}
+   * @param name name of the cache in the stats
+   */
+  public static synchronized void register(String owner, String name, SplitCache cache) {
+    caches.computeIfAbsent(owner, o -> new HashMap<>()).put(name, cache);
+  }
+
+  /**
+   * Drops the caches of an index that was removed from the node.
+   */
+  public static synchronized void release(String owner) {
+    caches.remove(owner);
+  }
+
+  /**
+   * @return the caches of the filters of all indices on the node, by name
+   */
+  public static synchronized Map<String, SplitCache> active() {
+    Map<String, SplitCache> active = new HashMap<>();
+    caches.values().forEach(active::putAll);
+    return active;
+  }
+}
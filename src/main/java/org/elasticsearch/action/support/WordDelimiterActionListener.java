@@ -1,55 +1,722 @@
 package org.elasticsearch.action.support;
 
+import org.elasticsearch.common.CheckedConsumer;
+import org.elasticsearch.common.document.DocumentField;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.seqno.SequenceNumbers;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.search.SearchResponse;
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.elasticsearch.search.aggregations.bucket.global.Global;
+import org.skroutz.elasticsearch.index.analysis.CharArraySetDictionary;
+import org.skroutz.elasticsearch.index.analysis.LayeredDictionary;
+import org.skroutz.elasticsearch.index.analysis.ProtectedWordsDictionary;
+import org.skroutz.elasticsearch.index.analysis.ProtectedWordsNormalizer;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Holds the dynamic protected words of one source index and builds new versions of them from
+ * the pages of a load, started with {@link #startLoad(boolean)} and published with
+ * {@link #finishLoad(ActionListener)}. Instances are shared through {@link ProtectedWordsSources}.
+ */
 public class WordDelimiterActionListener implements ActionListener<SearchResponse> {
 
-  private static WordDelimiterActionListener instance = null;
+  /** Name of the global aggregation that delta responses carry, counting every document of the index */
+  public static final String ALL_DOCS_AGGREGATION = "all_docs";
+  /** Fields of the documents of a source index, read from the source or from doc values if fetched */
+  public static final String WORD_FIELD = "word";
+  public static final String PATTERN_FIELD = "pattern";
+  /** Tokens separated by whitespace, passed through unsplit when they follow each other, see PhraseDictionary */
+  public static final String PHRASE_FIELD = "phrase";
+  /** Character type mappings such as {@code $ => DIGIT}, applied over the type table of the filters, see CharTypeMappings */
+  public static final String TYPE_MAPPING_FIELD = "type_mapping";
+  /** Optional, the namespaces of the word of a document, protected in every namespace if there are none */
+  public static final String NAMESPACES_FIELD = "namespaces";
+  /**
+   * Reload everything once words added incrementally exceed this fraction of the dictionary
+   * (and {@link #MIN_ADDITIONS}), so the base dictionary is rebuilt in the configured format
+   */
+  public static final double MAX_ADDITIONS_RATIO = 0.1;
+  public static final int MIN_ADDITIONS = 1000;
+
   private static final Logger logger = Loggers.getLogger(
           WordDelimiterActionListener.class,
           "WordDelimiter", "ActionListener"
   );
 
-  private Set<String> protectedWords;
+  /**
+   * Probed by the filter straight from the term buffer, without turning every
+   * token into a String. Written under the lock and read without it: filters take
+   * the current snapshot once per stream and keep probing it even if it is replaced,
+   * the replaced words are collected once the last stream using them is done.
+   */
+  private volatile Snapshot snapshot = new Snapshot(CharArraySetDictionary.EMPTY, 0);
+  private ProtectedWordsDictionary.Format format = ProtectedWordsDictionary.Format.HASH;
+  // applied to the words when loaded, and by the filters to the terms they look up
+  private volatile ProtectedWordsNormalizer normalizer = ProtectedWordsNormalizer.NONE;
+
+  // highest _seq_no loaded from each shard, and documents in the index as of the last refresh
+  private Map<Integer, Long> checkpoints = new HashMap<>();
+  private String indexUUID = null;
+  private int numShards = 0;
+  private long docCount = -1;
+  // version of the words last set from the cluster state, if they are synced through it
+  private long publishedVersion = -1;
+  // state of the source index as of the last load, see changedSince(String)
+  private String probe = null;
+  private long probeLoadedNanos = 0;
+  private boolean probeSettled = false;
+  // generation of the last load started, and of the last words set, see finishLoad(ActionListener)
+  private long loadsStarted = 0;
+  private long wordsGeneration = 0;
+
+  // statistics, see ProtectedWordsStats
+  private long lastRefresh = -1;
+  private long lastRefreshDuration = -1;
+  private long refreshes = 0;
+  private long skipped = 0;
+  private final long[] durations = new long[ProtectedWordsStats.DURATION_BUCKETS.length + 1];
+  private long failures = 0;
+  private String lastFailure = null;
+
+  public WordDelimiterActionListener() {}
 
-  protected WordDelimiterActionListener() {
-    protectedWords = new HashSet<String>();
+  /**
+   * Starts collecting the pages of a new load. Loads started concurrently are independent, but
+   * one finishing after the words were replaced by a newer load or version is dropped.
+   *
+   * @param full {@code true} for a load of the whole index, {@code false} for the documents
+   *             changed after {@link #checkpoint()}, searched with an {@link #ALL_DOCS_AGGREGATION}
+   *             global aggregation
+   * @return listener to hand the pages of the load to, in order
+   */
+  public ActionListener<SearchResponse> startLoad(boolean full) {
+    return new Load(full);
   }
 
+  /**
+   * Publishes a load: a full load replaces the dictionary, a delta load adds the words of the
+   * new documents on top of it.
+   *
+   * @param pages listener returned by {@link #startLoad(boolean)}, after the last page
+   * @return {@code false} if a delta cannot be applied incrementally (documents were updated or
+   *         deleted, or too many were added) or the normalization changed during the load, and
+   *         the index must be loaded in full instead. {@code true} if the load was dropped.
+   */
+  public boolean finishLoad(ActionListener<SearchResponse> pages) {
+    Load finished = (Load) pages;
+    // built by the thread finishing the load, without holding up readers of the stats
+    ProtectedWordsDictionary built = finished.full ? finished.words.build() : null;
+    synchronized (this) {
+      if (finished.generation <= wordsGeneration) {
+        // e.g. a load that outlived refresh_timeout, it would overwrite the newer words with older ones
+        logger.debug("dropping a load started before the words were last replaced");
+        return true;
+      }
+      // words normalized with steps changed during the load are dropped, like a delta that cannot be applied
+      boolean applied = finished.normalizer.equals(normalizer) && (finished.full ? replace(finished, built) : applyDelta(finished));
+      if (applied) {
+        wordsGeneration = finished.generation;
+      }
+      refreshed(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - finished.startNanos));
+      return applied;
+    }
+  }
+
+  /**
+   * Tells whether the source index changed since the words were loaded, from a cheap probe of
+   * its state. Writes become searchable only once the index refreshes, so the words are loaded
+   * once more after the probe stops changing, and the refreshes are skipped from then on.
+   *
+   * @param probe state of the source index, equal across probes if nothing was written to it
+   * @return {@code false} if the words are up to date and need not be loaded, counted as skipped
+   */
+  public synchronized boolean changedSince(String probe) {
+    if (probeSettled && probe.equals(this.probe)) {
+      lastRefresh = System.currentTimeMillis();
+      skipped++;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Records the probe taken before a load that completed.
+   *
+   * @param startNanos {@link System#nanoTime()} when the load started, only a load started after
+   *                   the first one with the same probe completed settles it: loads running
+   *                   concurrently, e.g. from several nodes, may all miss the same writes
+   */
+  public synchronized void loaded(String probe, long startNanos) {
+    if (!probe.equals(this.probe)) {
+      this.probe = probe;
+      probeLoadedNanos = System.nanoTime();
+      probeSettled = false;
+    } else if (startNanos - probeLoadedNanos >= 0) {
+      probeSettled = true;
+    }
+  }
+
+  private void refreshed(long duration) {
+    lastRefresh = System.currentTimeMillis();
+    refreshes++;
+    if (duration >= 0) {
+      lastRefreshDuration = duration;
+      int bucket = 0;
+      while (bucket < ProtectedWordsStats.DURATION_BUCKETS.length && duration >= ProtectedWordsStats.DURATION_BUCKETS[bucket]) {
+        bucket++;
+      }
+      durations[bucket]++;
+    }
+  }
+
+  /**
+   * Replaces the dictionary with the words of a single, complete response.
+   */
+  @Override
   public void onResponse(SearchResponse response) {
-    SearchHit[] hits = response.getHits().getHits();
-    Set<String> localProtectedWords = new HashSet<String>();
+    ActionListener<SearchResponse> load = startLoad(true);
+    load.onResponse(response);
+    finishLoad(load);
+  }
+
+  private boolean replace(Load full, ProtectedWordsDictionary built) {
+    snapshot = new Snapshot(built, snapshot.version + 1);
+    checkpoints = full.checkpoints;
+    indexUUID = full.indexUUID;
+    numShards = full.numShards;
+    docCount = full.docCount;
+    return true;
+  }
+
+  private boolean applyDelta(Load delta) {
+    // patterns are compiled together and namespaced words kept apart, only a full load rebuilds them,
+    // as it does type mappings
+    if (docCount < 0 || delta.recreated || delta.patternsChanged) {
+      return false;
+    }
+
+    // new sequence numbers without a matching growth of the index mean updates or deletes
+    if (docCount + delta.addedDocs != delta.docCount) {
+      return false;
+    }
+    if (delta.added.isEmpty()) {
+      return true;
+    }
+
+    ProtectedWordsDictionary updated = LayeredDictionary.withWords(snapshot.words, delta.added);
+    if (updated instanceof LayeredDictionary &&
+            ((LayeredDictionary) updated).additionsSize() > Math.max(MIN_ADDITIONS, MAX_ADDITIONS_RATIO * updated.size())) {
+      return false;
+    }
+
+    snapshot = new Snapshot(updated, snapshot.version + 1);
+    checkpoints = delta.checkpoints;
+    docCount = delta.docCount;
+    return true;
+  }
 
-    String word;
-    for (SearchHit hit : hits) {
-      word = hit.getSourceAsMap().get("word").toString();
-      localProtectedWords.add(word);
+  /**
+   * Replaces the dictionary with a version published by the elected master, in the configured format.
+   */
+  public synchronized void setPublished(long version, ProtectedWordsDictionary published) {
+    ProtectedWordsDictionary words;
+    if (normalizer.isNone()) {
+      words = format.copyOf(published);
+    } else {
+      ProtectedWordsDictionary.Builder builder = newBuilder();
+      published.forEachWord(builder::add);
+      published.forEachNamespaced(builder::add);
+      published.forEachPattern(builder::addPattern);
+      published.phrases().forEach(builder::addPhrase);
+      published.typeMappings().forEach(builder::addTypeMapping);
+      words = builder.build();
     }
+    snapshot = new Snapshot(words, version);
+    publishedVersion = version;
+    // loads in progress are older than this version
+    wordsGeneration = loadsStarted;
+    refreshed(-1);
+    checkpoints = new HashMap<>();
+    indexUUID = null;
+    numShards = 0;
+    docCount = -1;
+  }
 
-    protectedWords = localProtectedWords;
+  /**
+   * @return the version last passed to {@link #setPublished(long, ProtectedWordsDictionary)}, or -1
+   */
+  public synchronized long publishedVersion() {
+    return publishedVersion;
+  }
+
+  /**
+   * Writes the words and the checkpoints they were loaded up to, to be read back with
+   * {@link #restore(DataInput)}.
+   */
+  public synchronized void save(DataOutput out) throws IOException {
+    ProtectedWordsDictionary protectedWords = snapshot.words;
+    out.writeString(normalizer.toString());
+    out.writeString(indexUUID == null ? "" : indexUUID);
+    out.writeZLong(docCount);
+    out.writeVInt(numShards);
+    out.writeVInt(checkpoints.size());
+    for (Map.Entry<Integer, Long> checkpoint : checkpoints.entrySet()) {
+      out.writeVInt(checkpoint.getKey());
+      out.writeZLong(checkpoint.getValue());
+    }
+
+    int[] namespaced = new int[1];
+    protectedWords.forEachNamespaced((word, namespaces) -> namespaced[0]++);
+    out.writeVInt(protectedWords.size() - namespaced[0]);
+    IOException[] failure = new IOException[1];
+    protectedWords.forEachWord(word -> {
+      try {
+        out.writeString(word);
+      } catch (IOException e) {
+        failure[0] = e;
+      }
+    });
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+
+    List<String> patterns = new ArrayList<>();
+    protectedWords.forEachPattern(patterns::add);
+    out.writeVInt(patterns.size());
+    for (String pattern : patterns) {
+      out.writeString(pattern);
+    }
+
+    List<String> phrases = new ArrayList<>();
+    protectedWords.phrases().forEach(phrases::add);
+    out.writeVInt(phrases.size());
+    for (String phrase : phrases) {
+      out.writeString(phrase);
+    }
+
+    List<String> typeMappings = new ArrayList<>();
+    protectedWords.typeMappings().forEach(typeMappings::add);
+    out.writeVInt(typeMappings.size());
+    for (String typeMapping : typeMappings) {
+      out.writeString(typeMapping);
+    }
+
+    out.writeVInt(namespaced[0]);
+    protectedWords.forEachNamespaced((word, namespaces) -> {
+      try {
+        out.writeString(word);
+        out.writeVInt(namespaces.size());
+        for (String namespace : namespaces) {
+          out.writeString(namespace);
+        }
+      } catch (IOException e) {
+        failure[0] = e;
+      }
+    });
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+  }
+
+  /**
+   * Replaces the words and checkpoints with ones written by {@link #save(DataOutput)}, unless
+   * words were loaded already. The next refresh only fetches what changed since they were saved.
+   */
+  public void restore(DataInput in) throws IOException {
+    String savedNormalizer = in.readString();
+    String savedUUID = in.readString();
+    long savedDocCount = in.readZLong();
+    int savedNumShards = in.readVInt();
+    Map<Integer, Long> savedCheckpoints = new HashMap<>();
+    for (int i = in.readVInt(); i > 0; i--) {
+      savedCheckpoints.put(in.readVInt(), in.readZLong());
+    }
+
+    ProtectedWordsDictionary.Builder words;
+    synchronized (this) {
+      words = newBuilder();
+    }
+    readWords(in, words);
+    ProtectedWordsDictionary restored = words.build();
+
+    synchronized (this) {
+      // words saved with other normalization steps are not safe to restore, a removed step cannot be undone
+      if (docCount >= 0 || publishedVersion >= 0 || !savedNormalizer.equals(normalizer.toString())) {
+        return;
+      }
+      snapshot = new Snapshot(restored, snapshot.version + 1);
+      indexUUID = savedUUID.isEmpty() ? null : savedUUID;
+      docCount = savedDocCount;
+      numShards = savedNumShards;
+      checkpoints = savedCheckpoints;
+    }
+  }
+
+  /**
+   * Adds the words and patterns written by {@link #save(DataOutput)} to {@code words}, skipping
+   * the checkpoints they were loaded up to.
+   */
+  public static void readSaved(DataInput in, ProtectedWordsDictionary.Builder words) throws IOException {
+    in.readString();
+    in.readString();
+    in.readZLong();
+    in.readVInt();
+    for (int i = in.readVInt(); i > 0; i--) {
+      in.readVInt();
+      in.readZLong();
+    }
+    readWords(in, words);
+  }
+
+  private static void readWords(DataInput in, ProtectedWordsDictionary.Builder words) throws IOException {
+    for (int i = in.readVInt(); i > 0; i--) {
+      words.add(in.readString());
+    }
+    for (int i = in.readVInt(); i > 0; i--) {
+      words.addPattern(in.readString());
+    }
+    for (int i = in.readVInt(); i > 0; i--) {
+      words.addPhrase(in.readString());
+    }
+    for (int i = in.readVInt(); i > 0; i--) {
+      words.addTypeMapping(in.readString());
+    }
+    List<String> namespaces = new ArrayList<>();
+    for (int i = in.readVInt(); i > 0; i--) {
+      String word = in.readString();
+      namespaces.clear();
+      for (int j = in.readVInt(); j > 0; j--) {
+        namespaces.add(in.readString());
+      }
+      words.add(word, namespaces);
+    }
+  }
+
+  /**
+   * Replaces the words with the ones added by {@code reader}, normalized and in the configured
+   * format. Used by sources that are not indices, the words are swapped in only if it completes.
+   */
+  public void replaceWords(CheckedConsumer<ProtectedWordsDictionary.Builder, IOException> reader) throws IOException {
+    long startNanos = System.nanoTime();
+    ProtectedWordsDictionary.Builder words;
+    synchronized (this) {
+      words = newBuilder();
+    }
+    reader.accept(words);
+    ProtectedWordsDictionary built = words.build();
+    synchronized (this) {
+      snapshot = new Snapshot(built, snapshot.version + 1);
+      refreshed(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+  }
+
+  /**
+   * @return the sequence number up to which every shard has been loaded, or
+   *         {@link SequenceNumbers#UNASSIGNED_SEQ_NO} if the index must be loaded in full
+   */
+  public synchronized long checkpoint() {
+    if (docCount < 0) {
+      return SequenceNumbers.UNASSIGNED_SEQ_NO;
+    }
+    if (checkpoints.size() < numShards) {
+      return SequenceNumbers.NO_OPS_PERFORMED;
+    }
+
+    long checkpoint = Long.MAX_VALUE;
+    for (long seqNo : checkpoints.values()) {
+      checkpoint = Math.min(checkpoint, seqNo);
+    }
+    return checkpoint;
   }
 
   @Override
   public void onFailure(Exception e) {
+    synchronized (this) {
+      failures++;
+      lastFailure = e.toString();
+    }
     logger.error(e.getMessage());
   }
 
-  public Set<String> getProtectedWords() {
-    return protectedWords;
+  public synchronized ProtectedWordsStats stats() {
+    Snapshot current = snapshot;
+    return new ProtectedWordsStats(current.version, current.words.size(), current.words.ramBytesUsed(), lastRefresh,
+        lastRefreshDuration, refreshes, skipped, durations.clone(), failures, lastFailure);
+  }
+
+  /**
+   * @return the version of the words, see {@link ProtectedWordsStats#getVersion()}. It changes
+   *         whenever the words are replaced, along with them.
+   */
+  public long version() {
+    return snapshot.version;
   }
 
-  public synchronized static WordDelimiterActionListener getInstance() {
-    if(instance == null) {
-      instance = new WordDelimiterActionListener();
+  public ProtectedWordsDictionary getProtectedWords() {
+    return snapshot.words;
+  }
+
+  /**
+   * @return the current words together with their version
+   */
+  public Snapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Sets the representation used from the next refresh on.
+   */
+  public synchronized void setFormat(ProtectedWordsDictionary.Format format) {
+    this.format = format;
+  }
+
+  public ProtectedWordsNormalizer getNormalizer() {
+    return normalizer;
+  }
+
+  /**
+   * Sets the normalization of the words and of the terms looked up. If it changes, the next
+   * refresh reloads the words in full.
+   */
+  public synchronized void setNormalizer(ProtectedWordsNormalizer normalizer) {
+    if (!normalizer.equals(this.normalizer)) {
+      this.normalizer = normalizer;
+      docCount = -1;
+      probe = null;
+    }
+  }
+
+  private ProtectedWordsDictionary.Builder newBuilder() {
+    return normalizer.wrap(format.newBuilder());
+  }
+
+  /**
+   * An immutable version of the words. Replaced as a whole, so that the words and their version
+   * are always read together.
+   */
+  public static final class Snapshot {
+    private final ProtectedWordsDictionary words;
+    private final long version;
+
+    Snapshot(ProtectedWordsDictionary words, long version) {
+      this.words = words;
+      this.version = version;
     }
 
-    return instance;
+    public ProtectedWordsDictionary getWords() {
+      return words;
+    }
+
+    public long getVersion() {
+      return version;
+    }
+  }
+
+  /**
+   * Words and sequence numbers collected from the pages of one load.
+   */
+  private final class Load implements ActionListener<SearchResponse> {
+    final boolean full;
+    // every word of a full load
+    final ProtectedWordsDictionary.Builder words;
+    // the words of new documents, for a delta
+    final List<String> added = new ArrayList<>();
+    // new documents of a delta, with or without words, to compare with the growth of the index
+    long addedDocs = 0;
+    // checkpoints as of the start of the load, and as advanced by its pages
+    final Map<Integer, Long> loaded;
+    final Map<Integer, Long> checkpoints;
+    final ProtectedWordsNormalizer normalizer;
+    String indexUUID;
+    boolean recreated = false;
+    // a delta carrying patterns, phrases, type mappings or namespaced words
+    boolean patternsChanged = false;
+    int numShards = 0;
+    long docCount = -1;
+    final long startNanos = System.nanoTime();
+    final long generation;
+    // values of the hit being added
+    private final List<String> hitWords = new ArrayList<>();
+    private final List<String> hitPatterns = new ArrayList<>();
+    private final List<String> hitPhrases = new ArrayList<>();
+    private final List<String> hitTypeMappings = new ArrayList<>();
+    private final List<String> hitNamespaces = new ArrayList<>();
+
+    Load(boolean full) {
+      synchronized (WordDelimiterActionListener.this) {
+        this.full = full;
+        this.generation = ++loadsStarted;
+        this.normalizer = WordDelimiterActionListener.this.normalizer;
+        this.words = full ? newBuilder() : null;
+        this.loaded = WordDelimiterActionListener.this.checkpoints;
+        this.checkpoints = full ? new HashMap<>() : new HashMap<>(loaded);
+        this.indexUUID = WordDelimiterActionListener.this.indexUUID;
+      }
+    }
+
+    @Override
+    public void onFailure(Exception e) {
+      WordDelimiterActionListener.this.onFailure(e);
+    }
+
+    /**
+     * Adds a page of the load. Only the words are kept, so the page can be released as soon
+     * as this returns.
+     */
+    @Override
+    public void onResponse(SearchResponse page) {
+      if (docCount < 0) {
+        Global allDocs = page.getAggregations() == null ? null : page.getAggregations().get(ALL_DOCS_AGGREGATION);
+        docCount = allDocs == null ? page.getHits().getTotalHits().value : allDocs.getDocCount();
+        numShards = page.getTotalShards();
+      }
+
+      for (SearchHit hit : page.getHits().getHits()) {
+        String uuid = hit.getShard().getShardId().getIndex().getUUID();
+        int shard = hit.getShard().getShardId().id();
+        readValues(hit);
+
+        if (full) {
+          indexUUID = uuid;
+          for (String word : hitWords) {
+            addWord(word);
+          }
+          for (String pattern : hitPatterns) {
+            addPattern(pattern);
+          }
+          for (String phrase : hitPhrases) {
+            addPhrase(phrase);
+          }
+          for (String typeMapping : hitTypeMappings) {
+            addTypeMapping(typeMapping);
+          }
+        } else if (indexUUID != null && !indexUUID.equals(uuid)) {
+          // the index was recreated, sequence numbers started over
+          recreated = true;
+        } else if (hit.getSeqNo() > loaded.getOrDefault(shard, SequenceNumbers.NO_OPS_PERFORMED)) {
+          // the checkpoint is the lowest across shards, skip what was already loaded from this one
+          addedDocs++;
+          for (String word : hitWords) {
+            added.add(normalizer.normalize(word));
+          }
+          patternsChanged |= !hitPatterns.isEmpty() || !hitPhrases.isEmpty() || !hitTypeMappings.isEmpty()
+              || !hitNamespaces.isEmpty();
+        } else {
+          continue;
+        }
+        checkpoints.merge(shard, hit.getSeqNo(), Math::max);
+      }
+    }
+
+    /**
+     * Collects the words and patterns of a hit from its doc values, or else from its source,
+     * picking the two fields while parsing instead of turning the whole source into a map.
+     */
+    private void readValues(SearchHit hit) {
+      hitWords.clear();
+      hitPatterns.clear();
+      hitPhrases.clear();
+      hitTypeMappings.clear();
+      hitNamespaces.clear();
+      if (!hit.hasSource()) {
+        addValues(hit.field(WORD_FIELD), hitWords);
+        addValues(hit.field(PATTERN_FIELD), hitPatterns);
+        addValues(hit.field(PHRASE_FIELD), hitPhrases);
+        addValues(hit.field(TYPE_MAPPING_FIELD), hitTypeMappings);
+        addValues(hit.field(NAMESPACES_FIELD), hitNamespaces);
+        return;
+      }
+
+      try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY,
+          DeprecationHandler.THROW_UNSUPPORTED_OPERATION, hit.getSourceRef())) {
+        if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+          return;
+        }
+        List<String> values = null;
+        for (XContentParser.Token token = parser.nextToken(); token != XContentParser.Token.END_OBJECT;
+             token = parser.nextToken()) {
+          if (token == XContentParser.Token.FIELD_NAME) {
+            String field = parser.currentName();
+            values = WORD_FIELD.equals(field) ? hitWords : PATTERN_FIELD.equals(field) ? hitPatterns
+                : PHRASE_FIELD.equals(field) ? hitPhrases : TYPE_MAPPING_FIELD.equals(field) ? hitTypeMappings
+                : NAMESPACES_FIELD.equals(field) ? hitNamespaces : null;
+          } else if (values != null && token == XContentParser.Token.START_ARRAY) {
+            while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+              addValue(parser, token, values);
+            }
+          } else if (values != null) {
+            addValue(parser, token, values);
+          } else {
+            parser.skipChildren();
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private void addValue(XContentParser parser, XContentParser.Token token, List<String> values) throws IOException {
+      if (token.isValue() && token != XContentParser.Token.VALUE_NULL) {
+        values.add(parser.text());
+      } else {
+        parser.skipChildren();
+      }
+    }
+
+    private void addValues(DocumentField field, List<String> values) {
+      if (field != null) {
+        for (Object value : field.getValues()) {
+          values.add(value.toString());
+        }
+      }
+    }
+
+    private void addWord(String word) {
+      try {
+        words.add(word, hitNamespaces);
+      } catch (IllegalArgumentException e) {
+        logger.warn("ignoring protected word [{}]: {}", word, e.getMessage());
+      }
+    }
+
+    private void addPattern(String pattern) {
+      try {
+        words.addPattern(pattern);
+      } catch (IllegalArgumentException e) {
+        // skipped rather than failing the load, the rest of the words are still usable
+        logger.warn("ignoring invalid protected pattern [{}]: {}", pattern, e.getMessage());
+      }
+    }
+
+    private void addPhrase(String phrase) {
+      try {
+        words.addPhrase(phrase);
+      } catch (IllegalArgumentException e) {
+        logger.warn("ignoring protected phrase [{}]: {}", phrase, e.getMessage());
+      }
+    }
+
+    private void addTypeMapping(String rule) {
+      try {
+        words.addTypeMapping(rule);
+      } catch (IllegalArgumentException e) {
+        logger.warn("ignoring invalid type mapping [{}]: {}", rule, e.getMessage());
+      }
+    }
   }
 }
@@ -0,0 +1,109 @@
+package org.elasticsearch.action.support;
+
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+
+/**
+ * Scrolls through the results of a search, handing each page to a consumer as soon as it
+ * arrives so that only one page is held in memory at a time. Pages are handled on the given
+ * executor rather than on the network thread that received them.
+ */
+public class WordDelimiterScrollListener implements ActionListener<SearchResponse> {
+
+  private static final Logger logger = Loggers.getLogger(WordDelimiterScrollListener.class, "WordDelimiter", "ScrollListener");
+
+  private final Client client;
+  private final ThreadPool threadPool;
+  private final String executor;
+  private final TimeValue keepAlive;
+  private final ActionListener<SearchResponse> pages;
+  private final ActionListener<Void> done;
+  private String scrollId;
+  private long remaining = Long.MAX_VALUE;
+
+  /**
+   * @param client client used to fetch the following pages
+   * @param executor thread pool the pages are handled on
+   * @param keepAlive how long the search context is kept between pages
+   * @param pages receives the first page and every following page with hits, in order
+   * @param done notified once all pages were consumed, or on the first failure, including a page
+   *             that misses shards
+   */
+  public WordDelimiterScrollListener(Client client, ThreadPool threadPool, String executor, TimeValue keepAlive,
+                                     ActionListener<SearchResponse> pages, ActionListener<Void> done) {
+    this.client = client;
+    this.threadPool = threadPool;
+    this.executor = executor;
+    this.keepAlive = keepAlive;
+    this.pages = pages;
+    this.done = done;
+  }
+
+  @Override
+  public void onResponse(SearchResponse response) {
+    // the first page is always handed over, it carries the totals and aggregations
+    boolean first = scrollId == null;
+    if (response.getFailedShards() > 0) {
+      // the pages would miss the words of the failed shards, fail rather than hand over part of them
+      scrollId = response.getScrollId();
+      ShardSearchFailure[] failures = response.getShardFailures();
+      onFailure(new ElasticsearchException("[{}] of [{}] shards failed", failures.length > 0 ? failures[0].getCause() : null,
+          response.getFailedShards(), response.getTotalShards()));
+      return;
+    }
+    if (first && response.getHits().getTotalHits() != null
+            && response.getHits().getTotalHits().relation == TotalHits.Relation.EQUAL_TO) {
+      remaining = response.getHits().getTotalHits().value;
+    }
+    remaining -= response.getHits().getHits().length;
+    // stop without the final empty round trip when the total is known
+    boolean last = response.getHits().getHits().length == 0 || remaining <= 0;
+    scrollId = response.getScrollId();
+
+    try {
+      if (first || response.getHits().getHits().length > 0) {
+        pages.onResponse(response);
+      }
+    } catch (Exception e) {
+      onFailure(e);
+      return;
+    }
+
+    if (last) {
+      clearScroll();
+      done.onResponse(null);
+    } else {
+      client.prepareSearchScroll(scrollId).setScroll(keepAlive).execute(forked());
+    }
+  }
+
+  /**
+   * @return this listener, called on the executor
+   */
+  public ActionListener<SearchResponse> forked() {
+    return new ThreadedActionListener<>(logger, threadPool, executor, this, false);
+  }
+
+  @Override
+  public void onFailure(Exception e) {
+    clearScroll();
+    done.onFailure(e);
+  }
+
+  private void clearScroll() {
+    if (scrollId != null) {
+      client.prepareClearScroll().addScrollId(scrollId).execute(ActionListener.wrap(
+              (ClearScrollResponse r) -> {}, e -> {}));
+      scrollId = null;
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package org.elasticsearch.module;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.MMapDirectory;
+import org.elasticsearch.action.support.ProtectedWordsSources;
+import org.elasticsearch.action.support.WordDelimiterActionListener;
+import org.elasticsearch.common.io.PathUtils;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.Scheduler;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.skroutz.elasticsearch.index.analysis.PhraseTrie;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads the protected words of the filters that read them from a file ({@code protected_words_file})
+ * instead of an index, and reloads them within {@link #POLL_INTERVAL} of a change, without any
+ * cluster traffic. Files ending in {@code .words} are in the format of {@link ProtectedWordsSnapshots}
+ * and are memory mapped, others are plain text with one word, phrase of tokens separated by
+ * spaces, or character type mapping such as {@code $ => DIGIT}, per line.
+ */
+public class ProtectedWordsFiles implements Closeable {
+
+  public static final TimeValue POLL_INTERVAL = TimeValue.timeValueSeconds(1);
+
+  private static final Logger logger = Loggers.getLogger(ProtectedWordsFiles.class, "WordDelimiter", "Files");
+
+  private final ThreadPool threadPool;
+  private final WatchService watchService;
+  // directories of the files in use, by the key they are watched with
+  private final Map<WatchKey, Path> watched = new HashMap<>();
+  // modification time of each file as of its last load
+  private final Map<Path, FileTime> loaded = new ConcurrentHashMap<>();
+  private Scheduler.Cancellable scheduled;
+
+  public ProtectedWordsFiles(ThreadPool threadPool) throws IOException {
+    this.threadPool = threadPool;
+    this.watchService = PathUtils.getDefaultFileSystem().newWatchService();
+  }
+
+  /**
+   * Loads the words of a new file source, see {@link ProtectedWordsSources#setFileLoader}.
+   *
+   * @throws IllegalArgumentException if the file cannot be read
+   */
+  public void load(Path file, WordDelimiterActionListener listener) {
+    try {
+      read(file, listener);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("failed to load protected words from [" + file + "]", e);
+    }
+  }
+
+  /**
+   * Starts checking for changes to the files in use, on the thread pool of the plugin.
+   */
+  public synchronized void start() {
+    scheduled = threadPool.scheduleWithFixedDelay(this::poll, POLL_INTERVAL, WordDelimiterRunnable.EXECUTOR);
+  }
+
+  public synchronized void stop() {
+    if (scheduled != null) {
+      scheduled.cancel();
+      scheduled = null;
+    }
+  }
+
+  /**
+   * Reloads the files that were created or modified since the last poll. The directories of new
+   * files start being watched, and files changed before that are caught up with from their
+   * modification time. Deleted files keep the words they had.
+   */
+  void poll() {
+    Map<Path, WordDelimiterActionListener> files = ProtectedWordsSources.files();
+    loaded.keySet().retainAll(files.keySet());
+    Set<Path> directories = new HashSet<>();
+    for (Path file : files.keySet()) {
+      directories.add(file.getParent());
+    }
+
+    Set<Path> changed = new HashSet<>();
+    try {
+      for (Iterator<Map.Entry<WatchKey, Path>> it = watched.entrySet().iterator(); it.hasNext(); ) {
+        Map.Entry<WatchKey, Path> entry = it.next();
+        if (!directories.remove(entry.getValue())) {
+          entry.getKey().cancel();
+          it.remove();
+        }
+      }
+      for (Path directory : directories) {
+        watched.put(directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY), directory);
+        for (Path file : files.keySet()) {
+          if (file.getParent().equals(directory) && modified(file)) {
+            changed.add(file);
+          }
+        }
+      }
+
+      for (WatchKey key = watchService.poll(); key != null; key = watchService.poll()) {
+        Path directory = watched.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (directory == null) {
+            continue;
+          }
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            for (Path file : files.keySet()) {
+              if (file.getParent().equals(directory)) {
+                changed.add(file);
+              }
+            }
+          } else {
+            changed.add(directory.resolve(event.context().toString()));
+          }
+        }
+        key.reset();
+      }
+    } catch (ClosedWatchServiceException e) {
+      return;
+    } catch (IOException e) {
+      logger.warn("failed to watch the protected words files", e);
+    }
+
+    for (Path file : changed) {
+      WordDelimiterActionListener listener = files.get(file);
+      if (listener == null || !Files.exists(file)) {
+        continue;
+      }
+      try {
+        read(file, listener);
+        logger.info("reloaded [{}] protected words from [{}]", listener.getProtectedWords().size(), file);
+      } catch (IOException | RuntimeException e) {
+        // the words loaded last are kept
+        listener.onFailure(new IOException("failed to reload protected words from [" + file + "]", e));
+      }
+    }
+  }
+
+  private boolean modified(Path file) {
+    try {
+      return !Files.getLastModifiedTime(file).equals(loaded.get(file));
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private void read(Path file, WordDelimiterActionListener listener) throws IOException {
+    // taken before reading, so that a write racing with the read is caught up with
+    loaded.put(file, Files.getLastModifiedTime(file));
+    String name = file.getFileName().toString();
+    if (name.endsWith(ProtectedWordsSnapshots.EXTENSION)) {
+      try (Directory directory = new MMapDirectory(file.getParent());
+           ChecksumIndexInput in = directory.openChecksumInput(name, IOContext.READONCE)) {
+        CodecUtil.checkHeader(in, ProtectedWordsSnapshots.CODEC, ProtectedWordsSnapshots.VERSION,
+            ProtectedWordsSnapshots.VERSION);
+        listener.replaceWords(words -> {
+          WordDelimiterActionListener.readSaved(in, words);
+          // before the words are swapped in
+          CodecUtil.checkFooter(in);
+        });
+      }
+    } else {
+      try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        listener.replaceWords(words -> {
+          for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+              continue;
+            }
+            if (line.contains("=>")) {
+              try {
+                words.addTypeMapping(line);
+              } catch (IllegalArgumentException e) {
+                logger.warn("ignoring invalid type mapping [{}] of [{}]: {}", line, file, e.getMessage());
+              }
+              continue;
+            }
+            if (PhraseTrie.tokenize(line).length == 1) {
+              words.add(line);
+              continue;
+            }
+            try {
+              words.addPhrase(line);
+            } catch (IllegalArgumentException e) {
+              logger.warn("ignoring protected phrase [{}] of [{}]: {}", line, file, e.getMessage());
+            }
+          }
+        });
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    stop();
+    watchService.close();
+  }
+}
@@ -0,0 +1,93 @@
+package org.elasticsearch.module;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.ResourceAlreadyExistsException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.WordDelimiterActionListener;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.mapper.MapperService;
+
+import java.util.Set;
+
+/**
+ * Keeps a copy of every source index of protected words on every data node, so that the nodes
+ * load their words from local shards. Runs on the elected master only: source indices that do
+ * not exist are created with {@code auto_expand_replicas: 0-all} and keyword fields, existing ones
+ * are switched to it.
+ */
+public class ProtectedWordsIndexManager {
+
+  public static final String AUTO_EXPAND_REPLICAS = "0-all";
+
+  private static final Logger logger = Loggers.getLogger(ProtectedWordsIndexManager.class, "WordDelimiter", "IndexManager");
+
+  private final Client client;
+  private final ClusterService clusterService;
+  private final String defaultIndex;
+
+  public ProtectedWordsIndexManager(Client client, ClusterService clusterService, String defaultIndex) {
+    this.client = client;
+    this.clusterService = clusterService;
+    this.defaultIndex = defaultIndex;
+  }
+
+  /**
+   * Creates or expands the source indices named by the filters of all indices, and the default one.
+   */
+  public void manage() {
+    ClusterState state = clusterService.state();
+    if (!state.nodes().isLocalNodeElectedMaster()) {
+      return;
+    }
+
+    Set<String> sources = ProtectedWordsPublisher.sources(state, defaultIndex);
+    sources.add(defaultIndex);
+    for (String index : sources) {
+      IndexMetaData metaData = state.metaData().index(index);
+      if (metaData == null) {
+        // an alias is managed by whoever created it
+        if (!state.metaData().hasAlias(index)) {
+          create(index);
+        }
+      } else if (!AUTO_EXPAND_REPLICAS.equals(metaData.getSettings().get(IndexMetaData.SETTING_AUTO_EXPAND_REPLICAS))) {
+        expand(index);
+      }
+    }
+  }
+
+  private void create(String index) {
+    client.admin().indices().prepareCreate(index)
+        .setSettings(Settings.builder()
+            .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+            .put(IndexMetaData.SETTING_AUTO_EXPAND_REPLICAS, AUTO_EXPAND_REPLICAS))
+        // can be fetched from doc values
+        .addMapping(MapperService.SINGLE_MAPPING_NAME,
+            WordDelimiterActionListener.WORD_FIELD, "type=keyword",
+            WordDelimiterActionListener.PATTERN_FIELD, "type=keyword",
+            WordDelimiterActionListener.PHRASE_FIELD, "type=keyword",
+            WordDelimiterActionListener.TYPE_MAPPING_FIELD, "type=keyword",
+            WordDelimiterActionListener.NAMESPACES_FIELD, "type=keyword")
+        .execute(ActionListener.wrap(
+            created -> logger.info("Created [{}] with a copy on every node", index),
+            e -> {
+              // created meanwhile, expanded on the next pass if needed
+              if (!(ExceptionsHelper.unwrapCause(e) instanceof ResourceAlreadyExistsException)) {
+                logger.warn("Failed to create [" + index + "]", e);
+              }
+            }));
+  }
+
+  private void expand(String index) {
+    client.admin().indices().prepareUpdateSettings(index)
+        .setSettings(Settings.builder().put(IndexMetaData.SETTING_AUTO_EXPAND_REPLICAS, AUTO_EXPAND_REPLICAS))
+        .execute(ActionListener.wrap(
+            updated -> logger.info("Expanded the replicas of [{}] to every node", index),
+            e -> logger.warn("Failed to expand the replicas of [" + index + "]", e)));
+  }
+}
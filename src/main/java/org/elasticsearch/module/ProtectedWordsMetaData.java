@@ -0,0 +1,237 @@
+package org.elasticsearch.module;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.AbstractNamedDiffable;
+import org.elasticsearch.cluster.NamedDiff;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.skroutz.elasticsearch.index.analysis.CharArraySetDictionary;
+import org.skroutz.elasticsearch.index.analysis.FSTDictionary;
+import org.skroutz.elasticsearch.index.analysis.NamespacedDictionary;
+import org.skroutz.elasticsearch.index.analysis.PatternDictionary;
+import org.skroutz.elasticsearch.index.analysis.PhraseDictionary;
+import org.skroutz.elasticsearch.index.analysis.ProtectedWordsDictionary;
+import org.skroutz.elasticsearch.index.analysis.TypeMappingDictionary;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Protected words published by the elected master in the cluster state, one serialized
+ * {@link FSTDictionary}, its patterns, phrases, type mappings and namespaced words per source index. Not persisted,
+ * the master loads them again after a full cluster restart.
+ */
+public final class ProtectedWordsMetaData extends AbstractNamedDiffable<MetaData.Custom> implements MetaData.Custom {
+
+  public static final String TYPE = "dynamic_word_delimiter";
+  public static final ProtectedWordsMetaData EMPTY = new ProtectedWordsMetaData(Collections.emptyMap());
+
+  private final Map<String, Words> sources;
+
+  public ProtectedWordsMetaData(Map<String, Words> sources) {
+    this.sources = Collections.unmodifiableMap(new TreeMap<>(sources));
+  }
+
+  public ProtectedWordsMetaData(StreamInput in) throws IOException {
+    this(in.readMap(StreamInput::readString, Words::new));
+  }
+
+  public static NamedDiff<MetaData.Custom> readDiffFrom(StreamInput in) throws IOException {
+    return readDiffFrom(MetaData.Custom.class, TYPE, in);
+  }
+
+  /**
+   * @return the words of each source index
+   */
+  public Map<String, Words> sources() {
+    return sources;
+  }
+
+  @Override
+  public String getWriteableName() {
+    return TYPE;
+  }
+
+  @Override
+  public Version getMinimalSupportedVersion() {
+    return Version.V_7_7_0;
+  }
+
+  @Override
+  public EnumSet<MetaData.XContentContext> context() {
+    return MetaData.API_ONLY;
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    out.writeMap(sources, StreamOutput::writeString, (o, words) -> words.writeTo(o));
+  }
+
+  @Override
+  public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+    for (Map.Entry<String, Words> source : sources.entrySet()) {
+      builder.startObject(source.getKey());
+      builder.field("version", source.getValue().version);
+      builder.field("size", source.getValue().size);
+      builder.field("size_in_bytes", source.getValue().bytes.length());
+      builder.field("patterns", source.getValue().patterns.size());
+      builder.field("phrases", source.getValue().phrases.size());
+      builder.field("type_mappings", source.getValue().typeMappings.size());
+      builder.field("namespaced", source.getValue().namespaced.size());
+      builder.endObject();
+    }
+    return builder;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof ProtectedWordsMetaData && sources.equals(((ProtectedWordsMetaData) o).sources);
+  }
+
+  @Override
+  public int hashCode() {
+    return sources.hashCode();
+  }
+
+  /**
+   * A version of the words of one source index.
+   */
+  public static final class Words implements Writeable {
+    private final long version;
+    private final int size;
+    // FSTDictionary#save, empty if there are no words
+    private final BytesReference bytes;
+    private final List<String> patterns;
+    private final List<String> phrases;
+    private final List<String> typeMappings;
+    // word => namespaces, sorted so that equal words serialize the same
+    private final Map<String, List<String>> namespaced;
+
+    private Words(long version, int size, BytesReference bytes, List<String> patterns, List<String> phrases,
+                  List<String> typeMappings, Map<String, List<String>> namespaced) {
+      this.version = version;
+      this.size = size;
+      this.bytes = bytes;
+      this.patterns = patterns;
+      this.phrases = phrases;
+      this.typeMappings = typeMappings;
+      this.namespaced = namespaced;
+    }
+
+    Words(StreamInput in) throws IOException {
+      this(in.readVLong(), in.readVInt(), in.readBytesReference(), in.readStringList(), in.readStringList(),
+          in.readStringList(), new TreeMap<>(in.readMap(StreamInput::readString, StreamInput::readStringList)));
+    }
+
+    /**
+     * Serializes {@code dictionary}, whose words are either empty or an {@link FSTDictionary}.
+     */
+    public static Words of(long version, ProtectedWordsDictionary dictionary) {
+      List<String> patterns = new ArrayList<>();
+      dictionary.forEachPattern(patterns::add);
+      List<String> phrases = new ArrayList<>();
+      dictionary.phrases().forEach(phrases::add);
+      List<String> typeMappings = new ArrayList<>();
+      dictionary.typeMappings().forEach(typeMappings::add);
+      Map<String, List<String>> namespaced = new TreeMap<>();
+      dictionary.forEachNamespaced((word, namespaces) -> {
+        List<String> sorted = new ArrayList<>(namespaces);
+        Collections.sort(sorted);
+        namespaced.put(word, sorted);
+      });
+      if (dictionary instanceof TypeMappingDictionary) {
+        dictionary = ((TypeMappingDictionary) dictionary).words();
+      }
+      if (dictionary instanceof PhraseDictionary) {
+        dictionary = ((PhraseDictionary) dictionary).words();
+      }
+      if (dictionary instanceof PatternDictionary) {
+        dictionary = ((PatternDictionary) dictionary).words();
+      }
+      if (dictionary instanceof NamespacedDictionary) {
+        dictionary = ((NamespacedDictionary) dictionary).words();
+      }
+      if (dictionary.size() == 0) {
+        return new Words(version, 0, BytesArray.EMPTY, patterns, phrases, typeMappings, namespaced);
+      }
+      try (BytesStreamOutput out = new BytesStreamOutput()) {
+        ((FSTDictionary) dictionary).save(new OutputStreamDataOutput(out));
+        return new Words(version, dictionary.size(), out.bytes(), patterns, phrases, typeMappings, namespaced);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    Words withVersion(long version) {
+      return new Words(version, size, bytes, patterns, phrases, typeMappings, namespaced);
+    }
+
+    public long version() {
+      return version;
+    }
+
+    /**
+     * @return a copy of this version of the words, as an {@link FSTDictionary} if not empty, with the
+     *         patterns, the phrases, the type mappings and the namespaced words
+     */
+    public ProtectedWordsDictionary dictionary() {
+      ProtectedWordsDictionary words = CharArraySetDictionary.EMPTY;
+      if (size > 0) {
+        BytesRef ref = bytes.toBytesRef();
+        try {
+          words = FSTDictionary.load(new ByteArrayDataInput(ref.bytes, ref.offset, ref.length));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      return TypeMappingDictionary.withTypeMappings(PhraseDictionary.withPhrases(
+          PatternDictionary.withPatterns(NamespacedDictionary.withNamespaced(words, namespaced), patterns), phrases),
+          typeMappings);
+    }
+
+    /**
+     * @return {@code true} if both hold the same words, whatever their versions
+     */
+    public boolean sameWords(Words other) {
+      return other != null && size == other.size && bytes.equals(other.bytes) && patterns.equals(other.patterns)
+          && phrases.equals(other.phrases) && typeMappings.equals(other.typeMappings) && namespaced.equals(other.namespaced);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+      out.writeVLong(version);
+      out.writeVInt(size);
+      out.writeBytesReference(bytes);
+      out.writeStringCollection(patterns);
+      out.writeStringCollection(phrases);
+      out.writeStringCollection(typeMappings);
+      out.writeMap(namespaced, StreamOutput::writeString, StreamOutput::writeStringCollection);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Words && version == ((Words) o).version && sameWords((Words) o);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(version, size, bytes, patterns, phrases, typeMappings, namespaced);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package org.elasticsearch.module;
+
+import org.elasticsearch.action.support.ProtectedWordsSources;
+import org.elasticsearch.action.support.SplitCaches;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.index.Index;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Releases the sources and split caches acquired by analyzers that are not bound to an index
+ * service of the node, and so never see it removed: the ones built to verify or upgrade the
+ * metadata of an index, or on nodes that hold no shard of it, e.g. dedicated masters. An index
+ * deleted from the cluster, or without shards on the node, holds none of them. Owners unknown to
+ * the cluster metadata are left alone.
+ */
+public class ProtectedWordsOwners implements ClusterStateListener {
+
+  @Override
+  public void clusterChanged(ClusterChangedEvent event) {
+    for (Index index : event.indicesDeleted()) {
+      release(index.getUUID());
+    }
+    if (!event.routingTableChanged() && !event.metaDataChanged()) {
+      return;
+    }
+
+    ClusterState state = event.state();
+    Map<String, String> names = new HashMap<>();
+    for (IndexMetaData index : state.metaData()) {
+      names.put(index.getIndexUUID(), index.getIndex().getName());
+    }
+    for (String owner : ProtectedWordsSources.owners()) {
+      String name = names.get(owner);
+      if (name != null && !hasLocalShards(state, name)) {
+        release(owner);
+      }
+    }
+  }
+
+  private static boolean hasLocalShards(ClusterState state, String index) {
+    IndexRoutingTable routing = state.routingTable().index(index);
+    if (routing == null) {
+      return false;
+    }
+    String localNodeId = state.nodes().getLocalNodeId();
+    for (IndexShardRoutingTable shardTable : routing) {
+      for (ShardRouting shard : shardTable) {
+        // the target of a relocation has an index service already
+        if (localNodeId.equals(shard.currentNodeId()) || localNodeId.equals(shard.relocatingNodeId())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static void release(String owner) {
+    ProtectedWordsSources.release(owner);
+    SplitCaches.release(owner);
+  }
+}
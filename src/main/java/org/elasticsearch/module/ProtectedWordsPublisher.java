@@ -0,0 +1,145 @@
+package org.elasticsearch.module;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.support.ProtectedWordsSources;
+import org.elasticsearch.action.support.WordDelimiterActionListener;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.ClusterStateUpdateTask;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.common.Priority;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.skroutz.elasticsearch.index.analysis.ProtectedWordsDictionary;
+import org.skroutz.elasticsearch.index.analysis.ProtectedWordsNormalizer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Syncs the protected words through the cluster state: the elected master loads every source
+ * index used by a filter and publishes the words as {@link ProtectedWordsMetaData}, which all
+ * nodes apply to their {@link ProtectedWordsSources} as soon as the state is committed.
+ */
+public class ProtectedWordsPublisher implements ClusterStateListener {
+
+  private static final Logger logger = Loggers.getLogger(ProtectedWordsPublisher.class, "WordDelimiter", "Publisher");
+
+  private final ClusterService clusterService;
+  private final ThreadPool threadPool;
+  private final String defaultIndex;
+  private final ProtectedWordsNormalizer normalizer;
+  // words loaded by this node while it is the elected master, always as FSTs
+  private final Map<String, WordDelimiterActionListener> loaders = new HashMap<>();
+
+  public ProtectedWordsPublisher(ClusterService clusterService, ThreadPool threadPool, String defaultIndex,
+                                 ProtectedWordsNormalizer normalizer) {
+    this.clusterService = clusterService;
+    this.threadPool = threadPool;
+    this.defaultIndex = defaultIndex;
+    this.normalizer = normalizer;
+  }
+
+  /**
+   * @return the loaders of the source indices used by the filters of any index in the cluster,
+   *         or none if this node is not the elected master
+   */
+  public synchronized Map<String, WordDelimiterActionListener> loaders() {
+    ClusterState state = clusterService.state();
+    if (!state.nodes().isLocalNodeElectedMaster()) {
+      loaders.clear();
+      return new HashMap<>();
+    }
+
+    Set<String> sources = sources(state, defaultIndex);
+    loaders.keySet().retainAll(sources);
+    for (String index : sources) {
+      loaders.computeIfAbsent(index, i -> {
+        WordDelimiterActionListener loader = new WordDelimiterActionListener();
+        loader.setFormat(ProtectedWordsDictionary.Format.FST);
+        loader.setNormalizer(normalizer);
+        return loader;
+      });
+    }
+    return new HashMap<>(loaders);
+  }
+
+  /**
+   * Publishes the words loaded from {@code index}, unless they are the ones already published.
+   */
+  public void publish(String index, ProtectedWordsDictionary words) {
+    ProtectedWordsMetaData.Words loaded = ProtectedWordsMetaData.Words.of(0, words);
+
+    clusterService.submitStateUpdateTask("dynamic_word_delimiter [" + index + "]",
+        new ClusterStateUpdateTask(Priority.LOW) {
+          @Override
+          public ClusterState execute(ClusterState currentState) {
+            ProtectedWordsMetaData current = currentState.metaData().custom(ProtectedWordsMetaData.TYPE);
+            if (current == null) {
+              current = ProtectedWordsMetaData.EMPTY;
+            }
+            ProtectedWordsMetaData.Words published = current.sources().get(index);
+            Set<String> sources = sources(currentState, defaultIndex);
+            if (loaded.sameWords(published) && sources.containsAll(current.sources().keySet())) {
+              return currentState;
+            }
+
+            Map<String, ProtectedWordsMetaData.Words> updated = new HashMap<>(current.sources());
+            updated.keySet().retainAll(sources);
+            if (sources.contains(index) && !loaded.sameWords(published)) {
+              updated.put(index, loaded.withVersion(published == null ? 1 : published.version() + 1));
+            }
+            return ClusterState.builder(currentState).metaData(MetaData.builder(currentState.metaData())
+                .putCustom(ProtectedWordsMetaData.TYPE, new ProtectedWordsMetaData(updated))).build();
+          }
+
+          @Override
+          public void onFailure(String source, Exception e) {
+            logger.error(e.getMessage());
+          }
+        });
+  }
+
+  @Override
+  public void clusterChanged(ClusterChangedEvent event) {
+    // filters acquire their sources while the state is applied, before listeners are notified
+    ProtectedWordsMetaData published = event.state().metaData().custom(ProtectedWordsMetaData.TYPE);
+    if (published == null) {
+      return;
+    }
+
+    published.sources().forEach((index, words) -> {
+      WordDelimiterActionListener listener = ProtectedWordsSources.get(index);
+      if (listener != null && listener.publishedVersion() != words.version()) {
+        // rebuilt in the configured format off the cluster applier thread, in the order published
+        threadPool.executor(WordDelimiterRunnable.EXECUTOR).execute(() -> {
+          if (listener.publishedVersion() != words.version()) {
+            listener.setPublished(words.version(), words.dictionary());
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * @return the source indices named by the {@code dynamic_word_delimiter} filters of all indices
+   */
+  static Set<String> sources(ClusterState state, String defaultIndex) {
+    Set<String> sources = new HashSet<>();
+    for (IndexMetaData index : state.metaData()) {
+      for (Settings filter : index.getSettings().getGroups("index.analysis.filter").values()) {
+        // filters reading their words from a file do not use an index
+        if ("dynamic_word_delimiter".equals(filter.get("type")) && filter.get("protected_words_file") == null) {
+          sources.add(filter.get("protected_words_index", defaultIndex));
+        }
+      }
+    }
+    return sources;
+  }
+}
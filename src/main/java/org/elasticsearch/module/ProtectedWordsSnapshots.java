@@ -0,0 +1,97 @@
+package org.elasticsearch.module;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.action.support.WordDelimiterActionListener;
+import org.elasticsearch.common.logging.Loggers;
+import org.skroutz.elasticsearch.index.analysis.ProtectedWordsDictionary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps a copy of the protected words of each source index in the node data path, so that a
+ * restarted node protects them as soon as a filter needs them instead of after its first
+ * refresh. Files are memory mapped and checksummed, and replaced atomically.
+ */
+public class ProtectedWordsSnapshots implements Closeable {
+
+  public static final String DIRECTORY = "dynamic_word_delimiter";
+  static final String CODEC = "dynamic_word_delimiter_words";
+  // 1: the normalization steps of the words, 2: the patterns, 3: the namespaced words, 4: the phrases,
+  // 5: the type mappings
+  static final int VERSION = 5;
+  static final String EXTENSION = ".words";
+
+  private static final Logger logger = Loggers.getLogger(ProtectedWordsSnapshots.class, "WordDelimiter", "Snapshots");
+
+  private final Directory directory;
+  // the dictionary last written for each source, to skip unchanged ones
+  private final Map<String, ProtectedWordsDictionary> written = new HashMap<>();
+
+  public ProtectedWordsSnapshots(Path dataPath) throws IOException {
+    this.directory = new MMapDirectory(dataPath.resolve(DIRECTORY));
+  }
+
+  /**
+   * Loads the words saved for {@code index} into {@code listener}, if there are any.
+   */
+  public void restore(String index, WordDelimiterActionListener listener) {
+    try (ChecksumIndexInput in = directory.openChecksumInput(index + EXTENSION, IOContext.READONCE)) {
+      CodecUtil.checkHeader(in, CODEC, VERSION, VERSION);
+      listener.restore(in);
+      CodecUtil.checkFooter(in);
+      logger.info("restored [{}] protected words of [{}]", listener.getProtectedWords().size(), index);
+    } catch (NoSuchFileException e) {
+      // never saved on this node
+    } catch (IOException e) {
+      logger.warn("failed to restore the protected words of [" + index + "]", e);
+    }
+  }
+
+  /**
+   * Saves the words of the sources that changed since they were last saved.
+   */
+  public synchronized void write(Map<String, WordDelimiterActionListener> sources) {
+    written.keySet().retainAll(sources.keySet());
+    sources.forEach((index, listener) -> {
+      ProtectedWordsDictionary words = listener.getProtectedWords();
+      if (written.get(index) == words) {
+        return;
+      }
+
+      String name = index + EXTENSION;
+      String temp = index + ".tmp";
+      try {
+        try (IndexOutput out = directory.createOutput(temp, IOContext.DEFAULT)) {
+          CodecUtil.writeHeader(out, CODEC, VERSION);
+          listener.save(out);
+          CodecUtil.writeFooter(out);
+        }
+        directory.sync(Collections.singleton(temp));
+        directory.rename(temp, name);
+        directory.syncMetaData();
+        written.put(index, words);
+      } catch (IOException e) {
+        IOUtils.deleteFilesIgnoringExceptions(directory, temp);
+        logger.warn("failed to save the protected words of [" + index + "]", e);
+      }
+    });
+  }
+
+  @Override
+  public void close() throws IOException {
+    directory.close();
+  }
+}
@@ -1,34 +1,143 @@
 package org.elasticsearch.module;
 
 import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.Randomness;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.stats.ShardStats;
 import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.action.support.ProtectedWordsSources;
 import org.elasticsearch.action.support.WordDelimiterActionListener;
+import org.elasticsearch.action.support.WordDelimiterScrollListener;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.seqno.SequenceNumbers;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.threadpool.Scheduler;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.skroutz.elasticsearch.index.analysis.ProtectedWordsDictionary;
+import org.skroutz.elasticsearch.index.analysis.ProtectedWordsNormalizer;
 
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Refreshes the protected words every {@code refresh_interval}, on the generic thread pool. A
+ * refresh that is still loading when the next one is due makes it skip, until it completes or
+ * exceeds {@code refresh_timeout}. Its loads are not cancelled then, but the words keep those of
+ * the newest load, see {@link WordDelimiterActionListener#finishLoad(ActionListener)}.
+ */
 public class WordDelimiterRunnable extends AbstractRunnable {
   public static final TimeValue REFRESH_INTERVAL = TimeValue.timeValueMinutes(5);
+  // up to this fraction of the interval, so that nodes started together do not refresh in lockstep
+  public static final double REFRESH_JITTER = 0.1;
+  public static final TimeValue REFRESH_TIMEOUT = TimeValue.timeValueMinutes(10);
+  // thread pool the words are loaded and built on, off the network threads
+  public static final String EXECUTOR = "dynamic_word_delimiter";
   public static final String INDEX_NAME = "protected_words";
-  public static final int RESULTS_SIZE = 10000;
+  public static final int PAGE_SIZE = 1000;
+  public static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+  public static final String DICTIONARY_FORMAT = "hash";
+  public static final String SYNC_MODE = "poll";
+  public static final String NORMALIZATION = "";
+  public static final boolean MANAGE_INDEX = false;
+  public static final boolean DOC_VALUES = false;
+  // served by a copy on the node if there is one, see ProtectedWordsIndexManager
+  public static final String PREFERENCE = "_local";
 
-  private volatile boolean running;
+  private boolean running;
   private final Client client;
-  private final String index;
-  private final long interval;
+  private final ThreadPool threadPool;
+  private final TimeValue interval;
+  private final double jitter;
+  private final TimeValue timeout;
+  private Scheduler.Cancellable scheduled;
+  // the refresh in progress, if any
+  private final AtomicReference<Object> inFlight = new AtomicReference<>();
+  private final int pageSize;
+  // fetch the words from doc values instead of the source, they must be mapped as keywords
+  private final boolean docValues;
+  // set if the words are synced through the cluster state instead of polled by every node
+  private final ProtectedWordsPublisher publisher;
+  // set if the words are saved in the data path of the node
+  private final ProtectedWordsSnapshots snapshots;
+  // set if the source indices are kept on every node by the elected master
+  private final ProtectedWordsIndexManager indexManager;
   private static final Logger logger = Loggers.getLogger(WordDelimiterRunnable.class, "WordDelimiter", "Runnable");
 
-  public WordDelimiterRunnable(Client client, Settings settings) {
+  public WordDelimiterRunnable(Client client, ClusterService clusterService, ThreadPool threadPool,
+                               ProtectedWordsSnapshots snapshots, Settings settings) {
     this.client = client;
-    this.index = settings.get("plugin.dynamic_word_delimiter.protected_words_index", INDEX_NAME);
-    this.interval = settings.getAsTime("plugin.dynamic_word_delimiter.refresh_interval", REFRESH_INTERVAL).getMillis();
+    this.threadPool = threadPool;
+    this.snapshots = snapshots;
+    this.interval = settings.getAsTime("plugin.dynamic_word_delimiter.refresh_interval", REFRESH_INTERVAL);
+    this.jitter = settings.getAsDouble("plugin.dynamic_word_delimiter.refresh_jitter", REFRESH_JITTER);
+    this.timeout = settings.getAsTime("plugin.dynamic_word_delimiter.refresh_timeout", REFRESH_TIMEOUT);
+    this.pageSize = settings.getAsInt("plugin.dynamic_word_delimiter.page_size", PAGE_SIZE);
+    this.docValues = settings.getAsBoolean("plugin.dynamic_word_delimiter.doc_values", DOC_VALUES);
+    ProtectedWordsSources.setFormat(ProtectedWordsDictionary.Format.fromString(
+        settings.get("plugin.dynamic_word_delimiter.dictionary_format", DICTIONARY_FORMAT)));
+    ProtectedWordsNormalizer normalizer = ProtectedWordsNormalizer.fromString(
+        settings.get("plugin.dynamic_word_delimiter.normalization", NORMALIZATION));
+    ProtectedWordsSources.setNormalizer(normalizer);
+
+    String defaultIndex = settings.get("plugin.dynamic_word_delimiter.protected_words_index", INDEX_NAME);
+    this.indexManager = settings.getAsBoolean("plugin.dynamic_word_delimiter.manage_index", MANAGE_INDEX)
+        ? new ProtectedWordsIndexManager(client, clusterService, defaultIndex) : null;
+
+    String syncMode = settings.get("plugin.dynamic_word_delimiter.sync_mode", SYNC_MODE);
+    if ("cluster_state".equals(syncMode)) {
+      this.publisher = new ProtectedWordsPublisher(clusterService, threadPool, defaultIndex, normalizer);
+    } else if (SYNC_MODE.equals(syncMode)) {
+      this.publisher = null;
+    } else {
+      throw new IllegalArgumentException("Unknown sync_mode [" + syncMode + "], expected [poll] or [cluster_state]");
+    }
+  }
+
+  /**
+   * @return the publisher applying the words synced through the cluster state, or {@code null} when polling
+   */
+  public ProtectedWordsPublisher getPublisher() {
+    return publisher;
   }
 
-  public void stopRunning() {
+  /**
+   * Schedules the refreshes, the first one after the interval and a random part of it.
+   */
+  public synchronized void start() {
+    running = true;
+    long delay = (long) (Randomness.get().nextDouble() * jitter * interval.millis());
+    scheduled = threadPool.schedule(this::scheduleRefreshes, TimeValue.timeValueMillis(delay), ThreadPool.Names.GENERIC);
+  }
+
+  private synchronized void scheduleRefreshes() {
+    if (running) {
+      scheduled = threadPool.scheduleWithFixedDelay(this, interval, ThreadPool.Names.GENERIC);
+    }
+  }
+
+  /**
+   * Cancels the refreshes. One in progress finishes in the background.
+   */
+  public synchronized void stopRunning() {
     running = false;
+    if (scheduled != null) {
+      scheduled.cancel();
+      scheduled = null;
+    }
   }
 
   @Override
@@ -37,20 +146,158 @@ public class WordDelimiterRunnable extends AbstractRunnable {
   }
 
   protected void doRun() {
-    running = true;
-    WordDelimiterActionListener listener = WordDelimiterActionListener.getInstance();
-    SearchRequest searchRequest = client.prepareSearch().setSearchType(SearchType.QUERY_THEN_FETCH)
-        .setIndices(index).setSize(RESULTS_SIZE).request();
-
-    while (running) {
-      try {
-        Thread.sleep(interval);
-      } catch (InterruptedException e) {
-        logger.error(e.getMessage());
+    Object refresh = new Object();
+    if (!inFlight.compareAndSet(null, refresh)) {
+      logger.debug("The previous refresh is still in progress, skipping this one");
+      return;
+    }
+    Scheduler.ScheduledCancellable timedOut = threadPool.schedule(() -> {
+      if (inFlight.compareAndSet(refresh, null)) {
+        logger.warn("Refresh did not complete within [{}], no longer waiting for it", timeout);
+      }
+    }, timeout, ThreadPool.Names.SAME);
+
+    // the loads started by this refresh, and the refresh itself until they are all started
+    AtomicInteger pending = new AtomicInteger(1);
+    Runnable loadDone = () -> {
+      if (pending.decrementAndGet() == 0) {
+        timedOut.cancel();
+        if (snapshots != null) {
+          // words loaded by this refresh
+          snapshots.write(ProtectedWordsSources.active());
+        }
+        inFlight.compareAndSet(refresh, null);
+      }
+    };
+
+    try {
+      if (indexManager != null) {
+        indexManager.manage();
       }
+      if (publisher == null) {
+        // only the indices named by the filters of indices on this node
+        ProtectedWordsSources.active().forEach((index, listener) -> {
+          pending.incrementAndGet();
+          refreshIfChanged(index, listener, false, ActionListener.runAfter(
+              ActionListener.wrap(loaded -> {}, listener::onFailure), loadDone));
+        });
+      } else {
+        // only the elected master loads the words, the other nodes apply what it publishes
+        publisher.loaders().forEach((index, loader) -> {
+          pending.incrementAndGet();
+          // also published when unchanged, which drops the sources no longer used from the cluster state
+          refreshIfChanged(index, loader, true, ActionListener.runAfter(
+              ActionListener.wrap(loaded -> publisher.publish(index, loader.getProtectedWords()), loader::onFailure),
+              loadDone));
+        });
+      }
+    } finally {
+      loadDone.run();
+    }
+  }
+
+  /**
+   * Loads the words of the index, unless probing it shows that they are up to date or that it
+   * does not exist.
+   *
+   * @param full whether to load the whole index rather than what changed since the last load
+   */
+  private void refreshIfChanged(String index, WordDelimiterActionListener listener, boolean full,
+                                ActionListener<Void> done) {
+    probe(index, ActionListener.wrap(probe -> {
+      if (probe == null || !listener.changedSince(probe)) {
+        done.onResponse(null);
+        return;
+      }
+      long startNanos = System.nanoTime();
+      ActionListener<Void> loaded = ActionListener.wrap(r -> {
+        listener.loaded(probe, startNanos);
+        done.onResponse(null);
+      }, done::onFailure);
+      if (full) {
+        load(index, listener, fullRequest(index), true, loaded);
+      } else {
+        refresh(index, listener, loaded);
+      }
+    }, done::onFailure));
+  }
+
+  /**
+   * Probes the state of the index from its stats: its UUID and the highest sequence number of
+   * each primary, which grows with every write. Taken before a load, so that writes made while
+   * it runs show up in the next probe.
+   *
+   * @param probed receives the state, or {@code null} if the index does not exist or is closed
+   */
+  private void probe(String index, ActionListener<String> probed) {
+    client.admin().indices().prepareStats(index).clear()
+        .setIndicesOptions(IndicesOptions.lenientExpandOpen())
+        .execute(ActionListener.map(probed, stats -> {
+          Map<String, Long> maxSeqNos = new TreeMap<>();
+          for (ShardStats shard : stats.getShards()) {
+            if (shard.getShardRouting().primary() && shard.getSeqNoStats() != null) {
+              maxSeqNos.put(shard.getShardRouting().index().getUUID() + "/" + shard.getShardRouting().id(),
+                  shard.getSeqNoStats().getMaxSeqNo());
+            }
+          }
+          return maxSeqNos.isEmpty() ? null : maxSeqNos.toString();
+        }));
+  }
+
+  private void refresh(String index, WordDelimiterActionListener listener, ActionListener<Void> done) {
+    long checkpoint = listener.checkpoint();
+    if (checkpoint == SequenceNumbers.UNASSIGNED_SEQ_NO) {
+      load(index, listener, fullRequest(index), true, done);
+    } else {
+      // fetch only what changed since the last refresh, fall back to a full load if it cannot be applied
+      load(index, listener, deltaRequest(index, checkpoint), false, done);
+    }
+  }
+
+  /**
+   * Scrolls through the results of the request, handing the pages to the listener one at a time
+   * so that the whole index is never held in memory as search hits.
+   *
+   * @param done notified once the words were loaded in the listener, or the load failed
+   */
+  private void load(String index, WordDelimiterActionListener listener, SearchRequest request, boolean full,
+                    ActionListener<Void> done) {
+    ActionListener<SearchResponse> pages = listener.startLoad(full);
+    client.search(request, new WordDelimiterScrollListener(client, threadPool, EXECUTOR, SCROLL_KEEP_ALIVE, pages,
+        ActionListener.wrap(loaded -> {
+          if (listener.finishLoad(pages)) {
+            done.onResponse(null);
+          } else {
+            load(index, listener, fullRequest(index), true, done);
+          }
+        }, done::onFailure)).forked());
+  }
+
+  private SearchRequest fullRequest(String index) {
+    return pageRequest(index).request();
+  }
+
+  private SearchRequest deltaRequest(String index, long checkpoint) {
+    return pageRequest(index)
+        .setQuery(QueryBuilders.rangeQuery("_seq_no").gt(checkpoint))
+        .addAggregation(AggregationBuilders.global(WordDelimiterActionListener.ALL_DOCS_AGGREGATION))
+        .request();
+  }
 
-      if (client.admin().indices().prepareExists(index).get().isExists())
-        client.search(searchRequest, listener);
+  private SearchRequestBuilder pageRequest(String index) {
+    SearchRequestBuilder request = client.prepareSearch().setSearchType(SearchType.QUERY_THEN_FETCH)
+        .setIndices(index).setPreference(PREFERENCE).setSize(pageSize).setTrackTotalHits(true).seqNoAndPrimaryTerm(true)
+        .setScroll(SCROLL_KEEP_ALIVE).addSort(FieldSortBuilder.DOC_FIELD_NAME, SortOrder.ASC);
+    if (docValues) {
+      return request.setFetchSource(false)
+          .addDocValueField(WordDelimiterActionListener.WORD_FIELD)
+          .addDocValueField(WordDelimiterActionListener.PATTERN_FIELD)
+          .addDocValueField(WordDelimiterActionListener.PHRASE_FIELD)
+          .addDocValueField(WordDelimiterActionListener.TYPE_MAPPING_FIELD)
+          .addDocValueField(WordDelimiterActionListener.NAMESPACES_FIELD);
     }
+    return request.setFetchSource(new String[]{WordDelimiterActionListener.WORD_FIELD,
+        WordDelimiterActionListener.PATTERN_FIELD, WordDelimiterActionListener.PHRASE_FIELD,
+        WordDelimiterActionListener.TYPE_MAPPING_FIELD, WordDelimiterActionListener.NAMESPACES_FIELD}, null);
   }
 }
@@ -1,36 +1,81 @@
 package org.elasticsearch.module;
 
+import org.apache.logging.log4j.Logger;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.support.ProtectedWordsSources;
+import org.elasticsearch.env.NodeEnvironment;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
 
 public class WordDelimiterService extends AbstractLifecycleComponent {
-  public static final int WAIT_INTERVAL = 100;
-  private final Thread syncWordsThread;
+  private static final Logger logger = Loggers.getLogger(WordDelimiterService.class, "WordDelimiter", "Service");
+
   private final WordDelimiterRunnable runnable;
+  private final ClusterService clusterService;
+  private final ProtectedWordsSnapshots snapshots;
+  private final ProtectedWordsFiles files;
+  private final ThreadPool threadPool;
+  private final ProtectedWordsOwners owners = new ProtectedWordsOwners();
 
   @Inject
-  public WordDelimiterService(Settings settings, Client client) {
-    runnable = new WordDelimiterRunnable(client, settings);
-    syncWordsThread = new Thread(runnable);
+  public WordDelimiterService(Settings settings, Client client, ClusterService clusterService, ThreadPool threadPool,
+                              NodeEnvironment nodeEnvironment) throws IOException {
+    this.clusterService = clusterService;
+    this.threadPool = threadPool;
+    this.snapshots = nodeEnvironment.hasNodeFile()
+        ? new ProtectedWordsSnapshots(nodeEnvironment.nodeDataPaths()[0]) : null;
+    this.files = new ProtectedWordsFiles(threadPool);
+    runnable = new WordDelimiterRunnable(client, clusterService, threadPool, snapshots, settings);
   }
 
   protected void doStart() throws ElasticsearchException {
-    syncWordsThread.start();
+    if (snapshots != null) {
+      // before any index, and so any filter, is created on the node
+      ProtectedWordsSources.setRestorer(snapshots::restore);
+    }
+    ProtectedWordsSources.setExecutor(threadPool.executor(WordDelimiterRunnable.EXECUTOR));
+    ProtectedWordsSources.setFileLoader(files::load);
+    clusterService.addListener(owners);
+    if (runnable.getPublisher() != null) {
+      clusterService.addListener(runnable.getPublisher());
+    }
+    runnable.start();
+    files.start();
   }
 
   protected void doStop() throws ElasticsearchException {
+    if (snapshots != null) {
+      ProtectedWordsSources.setRestorer((index, words) -> {});
+    }
+    ProtectedWordsSources.setExecutor(Runnable::run);
+    ProtectedWordsSources.setFileLoader((file, words) -> {});
+    clusterService.removeListener(owners);
+    if (runnable.getPublisher() != null) {
+      clusterService.removeListener(runnable.getPublisher());
+    }
     runnable.stopRunning();
-    syncWordsThread.interrupt();
+    files.stop();
+  }
 
+  protected void doClose() throws ElasticsearchException {
     try {
-      syncWordsThread.join(WAIT_INTERVAL);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
+      files.close();
+    } catch (IOException e) {
+      logger.warn("failed to close the protected words files", e);
+    }
+    if (snapshots != null) {
+      try {
+        snapshots.close();
+      } catch (IOException e) {
+        logger.warn("failed to close the protected words snapshots", e);
+      }
     }
   }
-
-  protected void doClose() throws ElasticsearchException {}
 }
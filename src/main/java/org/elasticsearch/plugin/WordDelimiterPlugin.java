@@ -1,20 +1,51 @@
 package org.elasticsearch.plugin;
 
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.analyze.TransportWordDelimiterAnalyzeAction;
+import org.elasticsearch.action.analyze.WordDelimiterAnalyzeAction;
+import org.elasticsearch.action.stats.TransportWordDelimiterStatsAction;
+import org.elasticsearch.action.stats.WordDelimiterStatsAction;
+import org.elasticsearch.action.support.ProtectedWordsSources;
+import org.elasticsearch.action.support.SplitCaches;
+import org.elasticsearch.cluster.NamedDiff;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.IndexScopedSettings;
 import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexModule;
+import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.TokenFilterFactory;
+import org.elasticsearch.index.shard.IndexEventListener;
 import org.elasticsearch.indices.analysis.AnalysisModule;
+import org.elasticsearch.indices.cluster.IndicesClusterStateService;
+import org.elasticsearch.module.ProtectedWordsMetaData;
 import org.elasticsearch.module.WordDelimiterRunnable;
+import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.AnalysisPlugin;
 import org.elasticsearch.common.component.LifecycleComponent;
 import org.elasticsearch.module.WordDelimiterService;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.rest.action.RestWordDelimiterAnalyzeAction;
+import org.elasticsearch.rest.action.RestWordDelimiterStatsAction;
+import org.elasticsearch.threadpool.ExecutorBuilder;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
 
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.skroutz.elasticsearch.index.analysis.WordDelimiterTokenFilterFactory;
 
-public class WordDelimiterPlugin extends Plugin implements AnalysisPlugin {
+public class WordDelimiterPlugin extends Plugin implements AnalysisPlugin, ActionPlugin {
 
   private final Collection<Class<? extends LifecycleComponent>> services = new ArrayList<>();
 
@@ -33,6 +64,35 @@ public class WordDelimiterPlugin extends Plugin implements AnalysisPlugin {
             WordDelimiterTokenFilterFactory::new);
   }
 
+  @Override
+  public List<ActionHandler<? extends ActionRequest, ? extends ActionResponse>> getActions() {
+    return Arrays.asList(
+      new ActionHandler<>(WordDelimiterStatsAction.INSTANCE, TransportWordDelimiterStatsAction.class),
+      new ActionHandler<>(WordDelimiterAnalyzeAction.INSTANCE, TransportWordDelimiterAnalyzeAction.class));
+  }
+
+  @Override
+  public List<RestHandler> getRestHandlers(Settings settings, RestController restController,
+                                           ClusterSettings clusterSettings, IndexScopedSettings indexScopedSettings,
+                                           SettingsFilter settingsFilter,
+                                           IndexNameExpressionResolver indexNameExpressionResolver,
+                                           Supplier<DiscoveryNodes> nodesInCluster) {
+    return Arrays.asList(new RestWordDelimiterStatsAction(), new RestWordDelimiterAnalyzeAction());
+  }
+
+  @Override
+  public void onIndexModule(IndexModule indexModule) {
+    // filters of the index acquired their protected words sources and split caches when its analysis was built
+    indexModule.addIndexEventListener(new IndexEventListener() {
+      @Override
+      public void afterIndexRemoved(Index index, IndexSettings indexSettings,
+                                    IndicesClusterStateService.AllocatedIndices.IndexRemovalReason reason) {
+        ProtectedWordsSources.release(index.getUUID());
+        SplitCaches.release(index.getUUID());
+      }
+    });
+  }
+
   @Override
   public List<Setting<?>> getSettings() {
     return Arrays.asList(
@@ -44,8 +104,62 @@ public class WordDelimiterPlugin extends Plugin implements AnalysisPlugin {
       Setting.timeSetting(
         "plugin.dynamic_word_delimiter.refresh_interval",
         WordDelimiterRunnable.REFRESH_INTERVAL,
+        Setting.Property.NodeScope),
+      Setting.doubleSetting(
+        "plugin.dynamic_word_delimiter.refresh_jitter",
+        WordDelimiterRunnable.REFRESH_JITTER,
+        0.0,
+        Setting.Property.NodeScope),
+      Setting.timeSetting(
+        "plugin.dynamic_word_delimiter.refresh_timeout",
+        WordDelimiterRunnable.REFRESH_TIMEOUT,
+        Setting.Property.NodeScope),
+      new Setting<>(
+        "plugin.dynamic_word_delimiter.dictionary_format",
+        WordDelimiterRunnable.DICTIONARY_FORMAT,
+        Function.identity(),
+        Setting.Property.NodeScope),
+      Setting.intSetting(
+        "plugin.dynamic_word_delimiter.page_size",
+        WordDelimiterRunnable.PAGE_SIZE,
+        1,
+        Setting.Property.NodeScope),
+      new Setting<>(
+        "plugin.dynamic_word_delimiter.sync_mode",
+        WordDelimiterRunnable.SYNC_MODE,
+        Function.identity(),
+        Setting.Property.NodeScope),
+      Setting.boolSetting(
+        "plugin.dynamic_word_delimiter.doc_values",
+        WordDelimiterRunnable.DOC_VALUES,
+        Setting.Property.NodeScope),
+      Setting.boolSetting(
+        "plugin.dynamic_word_delimiter.manage_index",
+        WordDelimiterRunnable.MANAGE_INDEX,
+        Setting.Property.NodeScope),
+      new Setting<>(
+        "plugin.dynamic_word_delimiter.normalization",
+        WordDelimiterRunnable.NORMALIZATION,
+        Function.identity(),
         Setting.Property.NodeScope)
     );
   }
 
+  @Override
+  public List<ExecutorBuilder<?>> getExecutorBuilders(Settings settings) {
+    // a single thread: loads and rebuilds of the words are background work, applied in order
+    return Collections.singletonList(new FixedExecutorBuilder(settings, WordDelimiterRunnable.EXECUTOR, 1, -1,
+      "thread_pool." + WordDelimiterRunnable.EXECUTOR));
+  }
+
+  @Override
+  public List<NamedWriteableRegistry.Entry> getNamedWriteables() {
+    return Arrays.asList(
+      new NamedWriteableRegistry.Entry(MetaData.Custom.class, ProtectedWordsMetaData.TYPE,
+        ProtectedWordsMetaData::new),
+      new NamedWriteableRegistry.Entry(NamedDiff.class, ProtectedWordsMetaData.TYPE,
+        ProtectedWordsMetaData::readDiffFrom)
+    );
+  }
+
 }
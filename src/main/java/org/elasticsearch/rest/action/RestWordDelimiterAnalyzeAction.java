@@ -0,0 +1,171 @@
+package org.elasticsearch.rest.action;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.analyze.WordDelimiterAnalyzeAction;
+import org.elasticsearch.action.analyze.WordDelimiterAnalyzeRequest;
+import org.elasticsearch.action.analyze.WordDelimiterAnalyzeResponse;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+/**
+ * {@code POST {index}/_dynamic_word_delimiter/analyze}: analyzes many texts with an analyzer of the
+ * index, in batches sent in parallel to the analyze thread pools of the nodes holding the index.
+ * <p>
+ * The body is a JSON object, or newline delimited ones, with the texts in {@code text} or
+ * {@code texts} and optionally the {@code analyzer} and {@code filter}, which may be given as
+ * parameters instead.
+ */
+public class RestWordDelimiterAnalyzeAction extends BaseRestHandler {
+
+  static final int DEFAULT_BATCH_SIZE = 500;
+  static final int DEFAULT_MAX_CONCURRENT_BATCHES = 4;
+
+  @Override
+  public String getName() {
+    return "dynamic_word_delimiter_analyze_action";
+  }
+
+  @Override
+  public List<Route> routes() {
+    return Arrays.asList(
+        new Route(GET, "/{index}/_dynamic_word_delimiter/analyze"),
+        new Route(POST, "/{index}/_dynamic_word_delimiter/analyze"));
+  }
+
+  @Override
+  public boolean supportsContentStream() {
+    return true;
+  }
+
+  @Override
+  protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) throws IOException {
+    String index = request.param("index");
+    String[] analyzer = {request.param("analyzer")};
+    String[] filter = {request.param("filter")};
+    int batchSize = request.paramAsInt("batch_size", DEFAULT_BATCH_SIZE);
+    int maxConcurrentBatches = request.paramAsInt("max_concurrent_batches", DEFAULT_MAX_CONCURRENT_BATCHES);
+    if (batchSize < 1 || maxConcurrentBatches < 1) {
+      throw new IllegalArgumentException("[batch_size] and [max_concurrent_batches] must be positive");
+    }
+
+    List<String> texts = new ArrayList<>();
+    try (XContentParser parser = request.contentOrSourceParamParser()) {
+      // one object, or a stream of them
+      for (XContentParser.Token token = parser.nextToken(); token != null; token = parser.nextToken()) {
+        if (token != XContentParser.Token.START_OBJECT) {
+          throw new IllegalArgumentException("expected an object but got [" + token + "]");
+        }
+        String field = null;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+          if (token == XContentParser.Token.FIELD_NAME) {
+            field = parser.currentName();
+          } else if ("text".equals(field)) {
+            texts.add(text(parser, field, token));
+          } else if ("texts".equals(field) && token == XContentParser.Token.START_ARRAY) {
+            while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+              texts.add(text(parser, field, token));
+            }
+          } else if ("analyzer".equals(field) && token == XContentParser.Token.VALUE_STRING) {
+            analyzer[0] = parser.text();
+          } else if ("filter".equals(field) && token == XContentParser.Token.VALUE_STRING) {
+            filter[0] = parser.text();
+          } else {
+            throw new IllegalArgumentException("unexpected field [" + field + "]");
+          }
+        }
+      }
+    }
+
+    List<WordDelimiterAnalyzeRequest> batches = new ArrayList<>();
+    for (int from = 0; from < texts.size(); from += batchSize) {
+      batches.add(new WordDelimiterAnalyzeRequest(index)
+          .analyzer(analyzer[0])
+          .filter(filter[0])
+          .texts(new ArrayList<>(texts.subList(from, Math.min(texts.size(), from + batchSize)))));
+    }
+    if (batches.isEmpty()) {
+      // fails validation
+      batches.add(new WordDelimiterAnalyzeRequest(index).analyzer(analyzer[0]).filter(filter[0]));
+    }
+    return channel -> new Batches(client, batches, new RestToXContentListener<>(channel)).start(maxConcurrentBatches);
+  }
+
+  // nulls would only fail once the batches are sent, and numbers or objects would be analyzed as text
+  private static String text(XContentParser parser, String field, XContentParser.Token token) throws IOException {
+    if (token != XContentParser.Token.VALUE_STRING) {
+      throw new IllegalArgumentException("expected a string in [" + field + "] but got [" + token + "]");
+    }
+    return parser.text();
+  }
+
+  /**
+   * Sends the batches, at most a few at a time so as not to fill the analyze queues, and
+   * gathers their results in order.
+   */
+  private static final class Batches {
+    private final NodeClient client;
+    private final List<WordDelimiterAnalyzeRequest> requests;
+    private final ActionListener<WordDelimiterAnalyzeResponse> listener;
+    private final AtomicReferenceArray<WordDelimiterAnalyzeResponse> responses;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger pending;
+    private final AtomicBoolean failed = new AtomicBoolean();
+
+    Batches(NodeClient client, List<WordDelimiterAnalyzeRequest> requests,
+            ActionListener<WordDelimiterAnalyzeResponse> listener) {
+      this.client = client;
+      this.requests = requests;
+      this.listener = listener;
+      this.responses = new AtomicReferenceArray<>(requests.size());
+      this.pending = new AtomicInteger(requests.size());
+    }
+
+    void start(int maxConcurrentBatches) {
+      for (int i = Math.min(maxConcurrentBatches, requests.size()); i > 0; i--) {
+        sendNext();
+      }
+    }
+
+    private void sendNext() {
+      int batch = next.getAndIncrement();
+      if (batch >= requests.size() || failed.get()) {
+        return;
+      }
+      client.execute(WordDelimiterAnalyzeAction.INSTANCE, requests.get(batch), ActionListener.wrap(
+          response -> {
+            responses.set(batch, response);
+            if (pending.decrementAndGet() == 0) {
+              finish();
+            } else {
+              sendNext();
+            }
+          },
+          e -> {
+            if (failed.compareAndSet(false, true)) {
+              listener.onFailure(e);
+            }
+          }));
+    }
+
+    private void finish() {
+      List<WordDelimiterAnalyzeResponse.Result> results = new ArrayList<>();
+      for (int i = 0; i < responses.length(); i++) {
+        results.addAll(responses.get(i).getResults());
+      }
+      listener.onResponse(new WordDelimiterAnalyzeResponse(results));
+    }
+  }
+}
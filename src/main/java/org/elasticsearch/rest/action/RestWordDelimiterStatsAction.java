@@ -0,0 +1,40 @@
+package org.elasticsearch.rest.action;
+
+import org.elasticsearch.action.stats.WordDelimiterStatsAction;
+import org.elasticsearch.action.stats.WordDelimiterStatsRequest;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestRequest;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+
+/**
+ * {@code GET _nodes/dynamic_word_delimiter/stats} and {@code GET _nodes/{nodeId}/dynamic_word_delimiter/stats}
+ */
+public class RestWordDelimiterStatsAction extends BaseRestHandler {
+
+  @Override
+  public String getName() {
+    return "dynamic_word_delimiter_stats_action";
+  }
+
+  @Override
+  public List<Route> routes() {
+    return Arrays.asList(
+        new Route(GET, "/_nodes/dynamic_word_delimiter/stats"),
+        new Route(GET, "/_nodes/{nodeId}/dynamic_word_delimiter/stats"));
+  }
+
+  @Override
+  protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+    WordDelimiterStatsRequest statsRequest = new WordDelimiterStatsRequest(
+        Strings.splitStringByCommaToArray(request.param("nodeId")));
+    statsRequest.timeout(request.param("timeout"));
+    return channel -> client.execute(WordDelimiterStatsAction.INSTANCE, statsRequest,
+        new RestActions.NodesResponseRestListener<>(channel));
+  }
+}
@@ -0,0 +1,76 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.util.function.Consumer;
+
+/**
+ * {@link ProtectedWordsDictionary} backed by an unmodifiable {@link CharArraySet}.
+ */
+public final class CharArraySetDictionary implements ProtectedWordsDictionary {
+
+  public static final CharArraySetDictionary EMPTY = new CharArraySetDictionary(CharArraySet.EMPTY_SET, 0);
+
+  private final CharArraySet words;
+  private final long ramBytesUsed;
+
+  private CharArraySetDictionary(CharArraySet words, long ramBytesUsed) {
+    this.words = words;
+    this.ramBytesUsed = ramBytesUsed;
+  }
+
+  @Override
+  public boolean contains(char[] text, int offset, int length) {
+    return words.contains(text, offset, length);
+  }
+
+  @Override
+  public int size() {
+    return words.size();
+  }
+
+  @Override
+  public void forEachWord(Consumer<String> action) {
+    for (Object word : words) {
+      action.accept(new String((char[]) word));
+    }
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  CharArraySet words() {
+    return words;
+  }
+
+  static final class Builder implements ProtectedWordsDictionary.WordsBuilder {
+    private final CharArraySet words = new CharArraySet(16, false);
+    private long charsBytes = 0;
+
+    @Override
+    public void add(CharSequence word) {
+      if (words.add(word)) {
+        charsBytes += RamUsageEstimator.alignObjectSize(
+                RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) Character.BYTES * word.length());
+      }
+    }
+
+    @Override
+    public CharArraySetDictionary build() {
+      if (words.isEmpty()) {
+        return EMPTY;
+      }
+      // CharArrayMap keeps parallel key/value tables sized to the next power of two above 4/3 * size
+      long slots = 4;
+      while (words.size() > (slots >> 2) * 3) {
+        slots <<= 1;
+      }
+      long tables = 2 * RamUsageEstimator.alignObjectSize(
+              RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + slots * RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+      return new CharArraySetDictionary(CharArraySet.unmodifiableSet(words), charsBytes + tables);
+    }
+  }
+}
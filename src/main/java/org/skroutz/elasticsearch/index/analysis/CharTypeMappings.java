@@ -0,0 +1,219 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Character type mappings, e.g. {@code $ => DIGIT} or {@code , => DIGIT}, in the syntax of the
+ * {@code type_table} setting. Loaded with the dynamic protected words, they override the type table
+ * of the filters reading the words: each stream classifies characters with the mappings of the
+ * words it resolved at reset, so a change applies without reopening the indices, see {@link #apply}.
+ */
+public final class CharTypeMappings implements Accountable {
+
+  public static final CharTypeMappings EMPTY = new CharTypeMappings(new char[0], new byte[0], Collections.emptyList());
+
+  // source => type
+  private static final Pattern RULE = Pattern.compile("(.*)\\s*=>\\s*(.*)\\s*$");
+
+  // sorted by char
+  private final char[] chars;
+  private final byte[] types;
+  private final List<String> rules;
+  // the type tables of the filters with the mappings applied, by their own table. Arrays compare by identity,
+  // and filters share the table of their factory, so there is an entry per filter configuration at most
+  private final Map<byte[], byte[]> applied = new ConcurrentHashMap<>();
+
+  private CharTypeMappings(char[] chars, byte[] types, List<String> rules) {
+    this.chars = chars;
+    this.types = types;
+    this.rules = rules;
+  }
+
+  /**
+   * @return the mappings of {@code rules}, a later rule for the same character replacing an earlier one
+   * @throws IllegalArgumentException if a rule is invalid
+   */
+  public static CharTypeMappings of(Collection<String> rules) {
+    Builder builder = new Builder();
+    rules.forEach(builder::add);
+    return builder.build();
+  }
+
+  /**
+   * @return {@code table} with the mappings applied, grown to the highest mapped character if needed.
+   *         Computed once per table and version of the mappings, {@code table} itself if there are none
+   */
+  public byte[] apply(byte[] table) {
+    if (chars.length == 0) {
+      return table;
+    }
+    return applied.computeIfAbsent(table, this::overlay);
+  }
+
+  /**
+   * @return a copy of {@code table} with the mappings applied
+   */
+  byte[] overlay(byte[] table) {
+    int last = chars.length == 0 ? -1 : chars[chars.length - 1];
+    byte[] overlaid = new byte[Math.max(table.length, last + 1)];
+    System.arraycopy(table, 0, overlaid, 0, table.length);
+    for (int ch = table.length; ch < overlaid.length; ch++) {
+      overlaid[ch] = WordDelimiterIterator.getType(ch);
+    }
+    for (int i = 0; i < chars.length; i++) {
+      overlaid[chars[i]] = types[i];
+    }
+    return overlaid;
+  }
+
+  /**
+   * @return the highest mapped character, or -1 if there are none
+   */
+  public int maxChar() {
+    return chars.length == 0 ? -1 : chars[chars.length - 1];
+  }
+
+  public int size() {
+    return rules.size();
+  }
+
+  /**
+   * Visits the rule of every mapped character, as it was added.
+   */
+  public void forEach(Consumer<String> action) {
+    rules.forEach(action);
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long bytes = RamUsageEstimator.sizeOf(chars) + RamUsageEstimator.sizeOf(types);
+    for (String rule : rules) {
+      bytes += RamUsageEstimator.sizeOf(rule);
+    }
+    for (byte[] table : applied.values()) {
+      bytes += RamUsageEstimator.sizeOf(table);
+    }
+    return bytes;
+  }
+
+  /**
+   * Collects mappings for new {@link CharTypeMappings}. Single-use and not thread-safe.
+   */
+  public static final class Builder {
+    private final TreeMap<Character, Byte> types = new TreeMap<>();
+    private final Map<Character, String> rules = new TreeMap<>();
+
+    /**
+     * @throws IllegalArgumentException if the rule is invalid
+     */
+    public void add(String rule) {
+      Matcher m = RULE.matcher(rule);
+      if (!m.find()) {
+        throw new IllegalArgumentException("Invalid Mapping Rule : [" + rule + "]");
+      }
+      String lhs = parseString(m.group(1).trim());
+      Byte rhs = parseType(m.group(2).trim());
+      if (lhs.length() != 1) {
+        throw new IllegalArgumentException("Invalid Mapping Rule : [" + rule + "]. Only a single character is allowed.");
+      }
+      if (rhs == null) {
+        throw new IllegalArgumentException("Invalid Mapping Rule : [" + rule + "]. Illegal type.");
+      }
+      types.put(lhs.charAt(0), rhs);
+      rules.put(lhs.charAt(0), rule.trim());
+    }
+
+    public boolean isEmpty() {
+      return types.isEmpty();
+    }
+
+    public CharTypeMappings build() {
+      if (types.isEmpty()) {
+        return EMPTY;
+      }
+      char[] chars = new char[types.size()];
+      byte[] mapped = new byte[types.size()];
+      int i = 0;
+      for (Map.Entry<Character, Byte> mapping : types.entrySet()) {
+        chars[i] = mapping.getKey();
+        mapped[i++] = mapping.getValue();
+      }
+      return new CharTypeMappings(chars, mapped, Collections.unmodifiableList(new ArrayList<>(rules.values())));
+    }
+  }
+
+  private static Byte parseType(String s) {
+    switch (s) {
+      case "LOWER":
+        return WordDelimiterFilter.LOWER;
+      case "UPPER":
+        return WordDelimiterFilter.UPPER;
+      case "ALPHA":
+        return WordDelimiterFilter.ALPHA;
+      case "DIGIT":
+        return WordDelimiterFilter.DIGIT;
+      case "ALPHANUM":
+        return WordDelimiterFilter.ALPHANUM;
+      case "SUBWORD_DELIM":
+        return WordDelimiterFilter.SUBWORD_DELIM;
+      default:
+        return null;
+    }
+  }
+
+  private static String parseString(String s) {
+    StringBuilder out = new StringBuilder(s.length());
+    int readPos = 0;
+    int len = s.length();
+    while (readPos < len) {
+      char c = s.charAt(readPos++);
+      if (c == '\\') {
+        if (readPos >= len) {
+          throw new IllegalArgumentException("Invalid escaped char in [" + s + "]");
+        }
+        c = s.charAt(readPos++);
+        switch (c) {
+          case 'n':
+            c = '\n';
+            break;
+          case 't':
+            c = '\t';
+            break;
+          case 'r':
+            c = '\r';
+            break;
+          case 'b':
+            c = '\b';
+            break;
+          case 'f':
+            c = '\f';
+            break;
+          case 'u':
+            if (readPos + 3 >= len) {
+              throw new IllegalArgumentException("Invalid escaped char in [" + s + "]");
+            }
+            c = (char) Integer.parseInt(s.substring(readPos, readPos + 4), 16);
+            readPos += 4;
+            break;
+          default:
+            // '\\' and any other escaped char stand for themselves
+            break;
+        }
+      }
+      out.append(c);
+    }
+    return out.toString();
+  }
+}
@@ -0,0 +1,183 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.BytesRefFSTEnum;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.NoOutputs;
+import org.apache.lucene.util.fst.Util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * {@link ProtectedWordsDictionary} stored as a minimal acyclic automaton over the UTF-8 bytes
+ * of the words. Shared prefixes and suffixes (model codes, units) are stored once, so the
+ * footprint is a small fraction of a hash set. Lookups encode the term buffer to UTF-8 on the
+ * fly while walking the arcs, so no Strings or byte arrays are created per token.
+ */
+public final class FSTDictionary implements ProtectedWordsDictionary {
+
+  private static final NoOutputs OUTPUTS = NoOutputs.getSingleton();
+
+  private final FST<Object> fst;
+  private final int size;
+
+  // arcs and readers are stateful, null for the shared instance, see forThread()
+  private final Cursor cursor;
+
+  FSTDictionary(FST<Object> fst, int size) {
+    this(fst, size, null);
+  }
+
+  private FSTDictionary(FST<Object> fst, int size, Cursor cursor) {
+    this.fst = fst;
+    this.size = size;
+    this.cursor = cursor;
+  }
+
+  /**
+   * @return a view reusing one cursor for all of its lookups, while the shared instance creates
+   *         one per lookup
+   */
+  @Override
+  public ProtectedWordsDictionary forThread() {
+    return new FSTDictionary(fst, size, new Cursor(fst.getBytesReader()));
+  }
+
+  @Override
+  public boolean contains(char[] text, int offset, int length) {
+    Cursor cursor = this.cursor == null ? new Cursor(fst.getBytesReader()) : this.cursor;
+    FST.Arc<Object> arc = fst.getFirstArc(cursor.arc);
+    FST.BytesReader in = cursor.in;
+    final int end = offset + length;
+
+    try {
+      for (int i = offset; i < end; ) {
+        int cp = text[i++];
+        if (Character.isHighSurrogate((char) cp) && i < end && Character.isLowSurrogate(text[i])) {
+          cp = Character.toCodePoint((char) cp, text[i++]);
+        } else if (Character.isSurrogate((char) cp)) {
+          // unpaired surrogates are indexed as U+FFFD, see UnicodeUtil#UTF16toUTF8
+          cp = 0xFFFD;
+        }
+
+        if (cp < 0x80) {
+          arc = fst.findTargetArc(cp, arc, arc, in);
+        } else if (cp < 0x800) {
+          arc = fst.findTargetArc(0xC0 | (cp >> 6), arc, arc, in);
+          arc = arc == null ? null : fst.findTargetArc(0x80 | (cp & 0x3F), arc, arc, in);
+        } else if (cp < 0x10000) {
+          arc = fst.findTargetArc(0xE0 | (cp >> 12), arc, arc, in);
+          arc = arc == null ? null : fst.findTargetArc(0x80 | ((cp >> 6) & 0x3F), arc, arc, in);
+          arc = arc == null ? null : fst.findTargetArc(0x80 | (cp & 0x3F), arc, arc, in);
+        } else {
+          arc = fst.findTargetArc(0xF0 | (cp >> 18), arc, arc, in);
+          arc = arc == null ? null : fst.findTargetArc(0x80 | ((cp >> 12) & 0x3F), arc, arc, in);
+          arc = arc == null ? null : fst.findTargetArc(0x80 | ((cp >> 6) & 0x3F), arc, arc, in);
+          arc = arc == null ? null : fst.findTargetArc(0x80 | (cp & 0x3F), arc, arc, in);
+        }
+
+        if (arc == null) {
+          return false;
+        }
+      }
+    } catch (IOException e) {
+      // the FST is heap resident, reading it cannot fail
+      throw new UncheckedIOException(e);
+    }
+
+    return arc.isFinal();
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return fst.ramBytesUsed();
+  }
+
+  /**
+   * Writes the dictionary, to be read back with {@link #load(DataInput)}.
+   */
+  public void save(DataOutput out) throws IOException {
+    out.writeVInt(size);
+    fst.save(out);
+  }
+
+  public static FSTDictionary load(DataInput in) throws IOException {
+    int size = in.readVInt();
+    return new FSTDictionary(new FST<>(in, OUTPUTS), size);
+  }
+
+  @Override
+  public void forEachWord(Consumer<String> action) {
+    try {
+      BytesRefFSTEnum<Object> words = new BytesRefFSTEnum<>(fst);
+      for (BytesRefFSTEnum.InputOutput<Object> word = words.next(); word != null; word = words.next()) {
+        action.accept(word.input.utf8ToString());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static final class Cursor {
+    final FST.Arc<Object> arc = new FST.Arc<>();
+    final FST.BytesReader in;
+
+    Cursor(FST.BytesReader in) {
+      this.in = in;
+    }
+  }
+
+  /**
+   * Deduplicates the words in a {@link BytesRefHash}, which keeps them as UTF-8 in shared
+   * byte blocks, and compiles them in sorted order once all of them are known.
+   */
+  static final class Builder implements ProtectedWordsDictionary.WordsBuilder {
+    private final BytesRefHash words = new BytesRefHash();
+    private final BytesRefBuilder scratch = new BytesRefBuilder();
+
+    @Override
+    public void add(CharSequence word) {
+      if (word.length() == 0) {
+        return;
+      }
+      scratch.copyChars(word);
+      words.add(scratch.get());
+    }
+
+    @Override
+    public ProtectedWordsDictionary build() {
+      int size = words.size();
+      if (size == 0) {
+        return CharArraySetDictionary.EMPTY;
+      }
+
+      try {
+        org.apache.lucene.util.fst.Builder<Object> fstBuilder =
+                new org.apache.lucene.util.fst.Builder<>(FST.INPUT_TYPE.BYTE1, OUTPUTS);
+        IntsRefBuilder input = new IntsRefBuilder();
+        BytesRef word = new BytesRef();
+        int[] sorted = words.sort();
+        for (int i = 0; i < size; i++) {
+          words.get(sorted[i], word);
+          fstBuilder.add(Util.toIntsRef(word, input), OUTPUTS.getNoOutput());
+        }
+        words.close();
+        return new FSTDictionary(fstBuilder.finish(), size);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.apache.lucene.analysis.CharArraySet;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * {@link ProtectedWordsDictionary} made of an immutable base and a small set of words added
+ * since the base was built. Lets a refresh apply new words at a cost proportional to the
+ * additions, while the base (possibly a large FST) is left untouched until the next full load.
+ */
+public final class LayeredDictionary implements ProtectedWordsDictionary {
+
+  private final ProtectedWordsDictionary base;
+  private final CharArraySetDictionary additions;
+  private final int size;
+
+  private LayeredDictionary(ProtectedWordsDictionary base, CharArraySetDictionary additions, int size) {
+    this.base = base;
+    this.additions = additions;
+    this.size = size;
+  }
+
+  /**
+   * Returns a dictionary holding the words of the given one plus {@code words}. The given
+   * dictionary is not modified, so it can keep serving lookups while the new one is built.
+   */
+  public static ProtectedWordsDictionary withWords(ProtectedWordsDictionary dictionary, Iterable<String> words) {
+    ProtectedWordsDictionary base = dictionary;
+    CharArraySet previous = CharArraySet.EMPTY_SET;
+    if (dictionary instanceof LayeredDictionary) {
+      base = ((LayeredDictionary) dictionary).base;
+      previous = ((LayeredDictionary) dictionary).additions.words();
+    }
+
+    CharArraySetDictionary.Builder builder = new CharArraySetDictionary.Builder();
+    for (Object word : previous) {
+      builder.add(new String((char[]) word));
+    }
+    for (String word : words) {
+      // namespaced words of the base become protected in every namespace
+      if (base.namespaces(word.toCharArray(), 0, word.length()) != ALL_NAMESPACES) {
+        builder.add(word);
+      }
+    }
+
+    CharArraySetDictionary additions = builder.build();
+    if (additions.size() == 0) {
+      return base;
+    }
+    // namespaced words of the base that were added are counted once
+    int size = base.size();
+    for (Object word : additions.words()) {
+      char[] chars = (char[]) word;
+      if (!base.contains(chars, 0, chars.length)) {
+        size++;
+      }
+    }
+    return new LayeredDictionary(base, additions, size);
+  }
+
+  @Override
+  public ProtectedWordsDictionary forThread() {
+    ProtectedWordsDictionary view = base.forThread();
+    return view == base ? this : new LayeredDictionary(view, additions, size);
+  }
+
+  @Override
+  public boolean contains(char[] text, int offset, int length) {
+    return additions.contains(text, offset, length) || base.contains(text, offset, length);
+  }
+
+  @Override
+  public long namespaces(char[] text, int offset, int length) {
+    return additions.contains(text, offset, length) ? ALL_NAMESPACES : base.namespaces(text, offset, length);
+  }
+
+  @Override
+  public long namespaceMask(Collection<String> namespaces) {
+    return base.namespaceMask(namespaces);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void forEachWord(Consumer<String> action) {
+    base.forEachWord(action);
+    additions.forEachWord(action);
+  }
+
+  @Override
+  public void forEachNamespaced(BiConsumer<String, List<String>> action) {
+    // the added ones are protected in every namespace now, see forEachWord
+    base.forEachNamespaced((word, namespaces) -> {
+      if (!additions.contains(word.toCharArray(), 0, word.length())) {
+        action.accept(word, namespaces);
+      }
+    });
+  }
+
+  @Override
+  public void forEachPattern(Consumer<String> action) {
+    base.forEachPattern(action);
+  }
+
+  @Override
+  public PhraseTrie phrases() {
+    return base.phrases();
+  }
+
+  @Override
+  public CharTypeMappings typeMappings() {
+    return base.typeMappings();
+  }
+
+  /**
+   * @return number of words held outside of the base dictionary
+   */
+  public int additionsSize() {
+    return additions.size();
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return base.ramBytesUsed() + additions.ramBytesUsed();
+  }
+}
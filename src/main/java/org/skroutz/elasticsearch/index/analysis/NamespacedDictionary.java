@@ -0,0 +1,202 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.apache.lucene.analysis.CharArrayMap;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * {@link ProtectedWordsDictionary} of words protected in every namespace plus words protected in
+ * some namespaces only, e.g. the verticals of a catalogue. Each namespaced word is kept once with
+ * a bitset of its namespaces, so filters selecting different namespaces share a single copy of
+ * the words and tell them apart with one lookup and a bit test, see {@link #namespaces}.
+ */
+public final class NamespacedDictionary implements ProtectedWordsDictionary {
+
+  /** Bit of the words protected in every namespace, set in the mask of every filter */
+  public static final long GLOBAL = Long.MIN_VALUE;
+  /** Namespaces take the other bits, in the order they were first seen */
+  public static final int MAX_NAMESPACES = 63;
+
+  private final ProtectedWordsDictionary words;
+  private final CharArrayMap<Long> namespaced;
+  private final List<String> names;
+  private final long ramBytesUsed;
+
+  private NamespacedDictionary(ProtectedWordsDictionary words, CharArrayMap<Long> namespaced, List<String> names,
+                               long ramBytesUsed) {
+    this.words = words;
+    this.namespaced = namespaced;
+    this.names = names;
+    this.ramBytesUsed = ramBytesUsed;
+  }
+
+  /**
+   * @return {@code words} protecting each word of {@code namespaced} in the namespaces it maps to too
+   * @throws IllegalArgumentException if there are more than {@link #MAX_NAMESPACES} namespaces
+   */
+  public static ProtectedWordsDictionary withNamespaced(ProtectedWordsDictionary words,
+                                                        Map<String, ? extends Collection<String>> namespaced) {
+    Builder builder = new Builder(null);
+    namespaced.forEach(builder::add);
+    return builder.build(words);
+  }
+
+  @Override
+  public ProtectedWordsDictionary forThread() {
+    ProtectedWordsDictionary view = words.forThread();
+    return view == words ? this : new NamespacedDictionary(view, namespaced, names, ramBytesUsed);
+  }
+
+  @Override
+  public boolean contains(char[] text, int offset, int length) {
+    return namespaced.containsKey(text, offset, length) || words.contains(text, offset, length);
+  }
+
+  @Override
+  public long namespaces(char[] text, int offset, int length) {
+    Long namespaces = namespaced.get(text, offset, length);
+    if (namespaces != null) {
+      return namespaces;
+    }
+    return words.contains(text, offset, length) ? ALL_NAMESPACES : 0;
+  }
+
+  @Override
+  public long namespaceMask(Collection<String> namespaces) {
+    long mask = GLOBAL;
+    for (String namespace : namespaces) {
+      int bit = names.indexOf(namespace);
+      if (bit >= 0) {
+        mask |= 1L << bit;
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * @return number of distinct words, namespaced or not
+   */
+  @Override
+  public int size() {
+    return words.size() + namespaced.size();
+  }
+
+  @Override
+  public void forEachWord(Consumer<String> action) {
+    words.forEachWord(action);
+  }
+
+  @Override
+  public void forEachNamespaced(BiConsumer<String, List<String>> action) {
+    for (Map.Entry<Object, Long> entry : namespaced.entrySet()) {
+      long namespaces = entry.getValue();
+      List<String> selected = new ArrayList<>();
+      for (int bit = 0; bit < names.size(); bit++) {
+        if ((namespaces & (1L << bit)) != 0) {
+          selected.add(names.get(bit));
+        }
+      }
+      action.accept(new String((char[]) entry.getKey()), selected);
+    }
+  }
+
+  /**
+   * @return the words protected in every namespace
+   */
+  public ProtectedWordsDictionary words() {
+    return words;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return words.ramBytesUsed() + ramBytesUsed;
+  }
+
+  /**
+   * Adds the namespaced words to the dictionary built by another builder, which holds the words
+   * protected in every namespace. A word added both ways is protected in every namespace.
+   */
+  static final class Builder implements ProtectedWordsDictionary.WordsBuilder {
+    private final ProtectedWordsDictionary.WordsBuilder words;
+    private final CharArrayMap<Long> namespaced = new CharArrayMap<>(16, false);
+    private final Map<String, Integer> bits = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    // masks are shared by the words with the same namespaces, most of them are cached by Long anyway
+    private final Map<Long, Long> masks = new HashMap<>();
+
+    Builder(ProtectedWordsDictionary.WordsBuilder words) {
+      this.words = words;
+    }
+
+    @Override
+    public void add(CharSequence word) {
+      words.add(word);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the word brings the namespaces over {@link #MAX_NAMESPACES}
+     */
+    public void add(CharSequence word, Collection<String> namespaces) {
+      if (namespaces.isEmpty()) {
+        add(word);
+        return;
+      }
+      long mask = 0;
+      for (String namespace : namespaces) {
+        Integer bit = bits.get(namespace);
+        if (bit == null) {
+          if (names.size() == MAX_NAMESPACES) {
+            throw new IllegalArgumentException("more than " + MAX_NAMESPACES + " namespaces, [" + namespace + "] is one too many");
+          }
+          bit = names.size();
+          bits.put(namespace, bit);
+          names.add(namespace);
+        }
+        mask |= 1L << bit;
+      }
+      Long previous = namespaced.get(word);
+      if (previous != null) {
+        mask |= previous;
+      }
+      namespaced.put(word, masks.computeIfAbsent(mask, m -> m));
+    }
+
+    @Override
+    public ProtectedWordsDictionary build() {
+      return build(words.build());
+    }
+
+    private ProtectedWordsDictionary build(ProtectedWordsDictionary global) {
+      CharArrayMap<Long> kept = new CharArrayMap<>(namespaced.size(), false);
+      long charsBytes = 0;
+      for (Map.Entry<Object, Long> entry : namespaced.entrySet()) {
+        char[] word = (char[]) entry.getKey();
+        if (!global.contains(word, 0, word.length)) {
+          kept.put(word, entry.getValue());
+          charsBytes += RamUsageEstimator.alignObjectSize(
+              RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) Character.BYTES * word.length);
+        }
+      }
+      if (kept.isEmpty()) {
+        return global;
+      }
+      // parallel key/value tables, as for CharArraySetDictionary
+      long slots = 4;
+      while (kept.size() > (slots >> 2) * 3) {
+        slots <<= 1;
+      }
+      long tables = 2 * RamUsageEstimator.alignObjectSize(
+          RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + slots * RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+      return new NamespacedDictionary(global, CharArrayMap.unmodifiableMap(kept),
+          Collections.unmodifiableList(new ArrayList<>(names)), charsBytes + tables);
+    }
+  }
+}
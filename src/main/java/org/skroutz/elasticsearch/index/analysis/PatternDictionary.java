@@ -0,0 +1,168 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.automaton.Automata;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.CharacterRunAutomaton;
+import org.apache.lucene.util.automaton.MinimizationOperations;
+import org.apache.lucene.util.automaton.Operations;
+import org.apache.lucene.util.automaton.RegExp;
+import org.apache.lucene.util.automaton.TooComplexToDeterminizeException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * {@link ProtectedWordsDictionary} of exact words plus patterns protecting whole families of
+ * tokens, e.g. {@code [0-9]+gb} or {@code rtx[0-9]{4}}. The patterns use the syntax of Lucene's
+ * {@link RegExp} and are compiled together into one deterministic {@link CharacterRunAutomaton},
+ * which matches a term in a single pass over the term buffer, whatever the number of patterns.
+ */
+public final class PatternDictionary implements ProtectedWordsDictionary {
+
+  private final ProtectedWordsDictionary words;
+  private final List<String> patterns;
+  private final CharacterRunAutomaton automaton;
+
+  private PatternDictionary(ProtectedWordsDictionary words, List<String> patterns, CharacterRunAutomaton automaton) {
+    this.words = words;
+    this.patterns = patterns;
+    this.automaton = automaton;
+  }
+
+  /**
+   * @return {@code words} protecting the terms that match any of {@code patterns} too
+   * @throws IllegalArgumentException if a pattern is invalid or they are too complex to compile
+   */
+  public static ProtectedWordsDictionary withPatterns(ProtectedWordsDictionary words, Collection<String> patterns) {
+    Builder builder = new Builder(null);
+    patterns.forEach(builder::addPattern);
+    return builder.build(words);
+  }
+
+  @Override
+  public ProtectedWordsDictionary forThread() {
+    ProtectedWordsDictionary view = words.forThread();
+    return view == words ? this : new PatternDictionary(view, patterns, automaton);
+  }
+
+  @Override
+  public boolean contains(char[] text, int offset, int length) {
+    return words.contains(text, offset, length) || automaton.run(text, offset, length);
+  }
+
+  /**
+   * Terms matching a pattern are protected in every namespace.
+   */
+  @Override
+  public long namespaces(char[] text, int offset, int length) {
+    long namespaces = words.namespaces(text, offset, length);
+    return namespaces != ALL_NAMESPACES && automaton.run(text, offset, length) ? ALL_NAMESPACES : namespaces;
+  }
+
+  @Override
+  public long namespaceMask(Collection<String> namespaces) {
+    return words.namespaceMask(namespaces);
+  }
+
+  /**
+   * @return number of exact words, patterns are not counted
+   */
+  @Override
+  public int size() {
+    return words.size();
+  }
+
+  @Override
+  public void forEachWord(Consumer<String> action) {
+    words.forEachWord(action);
+  }
+
+  @Override
+  public void forEachNamespaced(BiConsumer<String, List<String>> action) {
+    words.forEachNamespaced(action);
+  }
+
+  @Override
+  public void forEachPattern(Consumer<String> action) {
+    patterns.forEach(action);
+  }
+
+  /**
+   * @return the exact words, without the patterns
+   */
+  public ProtectedWordsDictionary words() {
+    return words;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long patternsBytes = 0;
+    for (String pattern : patterns) {
+      patternsBytes += RamUsageEstimator.sizeOf(pattern);
+    }
+    return words.ramBytesUsed() + automaton.ramBytesUsed() + patternsBytes;
+  }
+
+  /**
+   * Adds the patterns to the dictionary built by another builder, which holds the exact words.
+   */
+  static final class Builder implements ProtectedWordsDictionary.WordsBuilder {
+    private final NamespacedDictionary.Builder words;
+    private final Set<String> patterns = new LinkedHashSet<>();
+    // the union of the patterns so far, deterministic and minimal
+    private Automaton automaton = Automata.makeEmpty();
+
+    Builder(NamespacedDictionary.Builder words) {
+      this.words = words;
+    }
+
+    @Override
+    public void add(CharSequence word) {
+      words.add(word);
+    }
+
+    public void add(CharSequence word, Collection<String> namespaces) {
+      words.add(word, namespaces);
+    }
+
+    /**
+     * Compiles the pattern with the ones added before, so that a pattern making them too complex
+     * is rejected here and the others can still be built.
+     *
+     * @throws IllegalArgumentException if the pattern is not a valid {@link RegExp}, or it is too
+     *         complex to determinize, alone or together with the patterns added before
+     */
+    public void addPattern(String pattern) {
+      if (patterns.contains(pattern)) {
+        return;
+      }
+      try {
+        automaton = MinimizationOperations.minimize(Operations.union(automaton, new RegExp(pattern).toAutomaton()),
+            Operations.DEFAULT_MAX_DETERMINIZED_STATES);
+      } catch (TooComplexToDeterminizeException e) {
+        throw new IllegalArgumentException("pattern [" + pattern + "] is too complex to compile", e);
+      }
+      patterns.add(pattern);
+    }
+
+    @Override
+    public ProtectedWordsDictionary build() {
+      return build(words.build());
+    }
+
+    private ProtectedWordsDictionary build(ProtectedWordsDictionary built) {
+      if (patterns.isEmpty()) {
+        return built;
+      }
+      return new PatternDictionary(built, Collections.unmodifiableList(new ArrayList<>(patterns)),
+          new CharacterRunAutomaton(automaton));
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * {@link ProtectedWordsDictionary} of words plus protected phrases, runs of tokens that
+ * {@link WordDelimiterFilter} looks ahead for and passes through unsplit, see {@link PhraseTrie}.
+ * Phrases are protected in every namespace.
+ */
+public final class PhraseDictionary implements ProtectedWordsDictionary {
+
+  private final ProtectedWordsDictionary words;
+  private final PhraseTrie phrases;
+
+  private PhraseDictionary(ProtectedWordsDictionary words, PhraseTrie phrases) {
+    this.words = words;
+    this.phrases = phrases;
+  }
+
+  /**
+   * @return {@code words} protecting {@code phrases} too, their tokens separated by whitespace
+   * @throws IllegalArgumentException if a phrase has too few or too many tokens
+   */
+  public static ProtectedWordsDictionary withPhrases(ProtectedWordsDictionary words, Collection<String> phrases) {
+    if (phrases.isEmpty()) {
+      return words;
+    }
+    PhraseTrie.Builder builder = new PhraseTrie.Builder();
+    for (String phrase : phrases) {
+      builder.add(PhraseTrie.tokenize(phrase));
+    }
+    return new PhraseDictionary(words, builder.build());
+  }
+
+  @Override
+  public ProtectedWordsDictionary forThread() {
+    ProtectedWordsDictionary view = words.forThread();
+    return view == words ? this : new PhraseDictionary(view, phrases);
+  }
+
+  @Override
+  public boolean contains(char[] text, int offset, int length) {
+    return words.contains(text, offset, length);
+  }
+
+  @Override
+  public long namespaces(char[] text, int offset, int length) {
+    return words.namespaces(text, offset, length);
+  }
+
+  @Override
+  public long namespaceMask(Collection<String> namespaces) {
+    return words.namespaceMask(namespaces);
+  }
+
+  /**
+   * @return number of words, phrases are not counted
+   */
+  @Override
+  public int size() {
+    return words.size();
+  }
+
+  @Override
+  public void forEachWord(Consumer<String> action) {
+    words.forEachWord(action);
+  }
+
+  @Override
+  public void forEachNamespaced(BiConsumer<String, List<String>> action) {
+    words.forEachNamespaced(action);
+  }
+
+  @Override
+  public void forEachPattern(Consumer<String> action) {
+    words.forEachPattern(action);
+  }
+
+  @Override
+  public PhraseTrie phrases() {
+    return phrases;
+  }
+
+  /**
+   * @return the words and patterns, without the phrases
+   */
+  public ProtectedWordsDictionary words() {
+    return words;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return words.ramBytesUsed() + phrases.ramBytesUsed();
+  }
+
+  /**
+   * Adds the phrases to the dictionary built by another builder, which holds the words and patterns.
+   */
+  static final class Builder implements ProtectedWordsDictionary.WordsBuilder {
+    private final PatternDictionary.Builder words;
+    private final PhraseTrie.Builder phrases = new PhraseTrie.Builder();
+    private boolean empty = true;
+
+    Builder(PatternDictionary.Builder words) {
+      this.words = words;
+    }
+
+    @Override
+    public void add(CharSequence word) {
+      words.add(word);
+    }
+
+    public void add(CharSequence word, Collection<String> namespaces) {
+      words.add(word, namespaces);
+    }
+
+    public void addPattern(String pattern) {
+      words.addPattern(pattern);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the phrase has too few or too many tokens
+     */
+    public void addPhrase(String phrase) {
+      phrases.add(PhraseTrie.tokenize(phrase));
+      empty = false;
+    }
+
+    @Override
+    public ProtectedWordsDictionary build() {
+      ProtectedWordsDictionary built = words.build();
+      return empty ? built : new PhraseDictionary(built, phrases.build());
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.apache.lucene.analysis.CharArrayMap;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Protected phrases, e.g. {@code usb c} or {@code galaxy s23}: runs of tokens that
+ * {@link WordDelimiterFilter} passes through unsplit. The phrases are kept in a trie over whole
+ * tokens, walked one input token at a time with {@link #next}. Tokens are interned to ids, so
+ * a token that starts no phrase, most of them, costs a single hash lookup, and the edges are
+ * an open addressing table of primitives keyed by node and token id.
+ */
+public final class PhraseTrie implements Accountable {
+
+  /** Node to start walking from, with the first token of the input */
+  public static final int ROOT = 0;
+  public static final int NO_MATCH = -1;
+  /** Most tokens of a phrase, bounds the lookahead of the filter */
+  public static final int MAX_TOKENS = 8;
+
+  public static final PhraseTrie EMPTY = new Builder().build();
+
+  private final CharArrayMap<Integer> tokens;
+  // edge (node << 32 | token) in keys, its target node at the same slot of targets, -1 for free slots
+  private final long[] keys;
+  private final int[] targets;
+  private final int mask;
+  // nodes ending a phrase
+  private final FixedBitSet ends;
+  private final List<String> phrases;
+  private final int maxTokens;
+
+  private PhraseTrie(CharArrayMap<Integer> tokens, long[] keys, int[] targets, FixedBitSet ends,
+                     List<String> phrases, int maxTokens) {
+    this.tokens = tokens;
+    this.keys = keys;
+    this.targets = targets;
+    this.mask = keys.length - 1;
+    this.ends = ends;
+    this.phrases = phrases;
+    this.maxTokens = maxTokens;
+  }
+
+  /**
+   * @return the node reached from {@code node} with the token, or {@link #NO_MATCH}
+   */
+  public int next(int node, char[] text, int offset, int length) {
+    Integer token = tokens.get(text, offset, length);
+    if (token == null) {
+      return NO_MATCH;
+    }
+    long key = (long) node << 32 | token;
+    for (int slot = slot(key, mask); keys[slot] != -1; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return targets[slot];
+      }
+    }
+    return NO_MATCH;
+  }
+
+  /**
+   * @return {@code true} if the tokens walked to reach the node make a whole phrase
+   */
+  public boolean isPhrase(int node) {
+    return ends.get(node);
+  }
+
+  /**
+   * @return number of tokens of the longest phrase, 0 if there are none
+   */
+  public int maxTokens() {
+    return maxTokens;
+  }
+
+  public int size() {
+    return phrases.size();
+  }
+
+  /**
+   * Visits every phrase, its tokens separated by single spaces.
+   */
+  public void forEach(Consumer<String> action) {
+    phrases.forEach(action);
+  }
+
+  /**
+   * @return the tokens of a phrase, separated by whitespace
+   */
+  public static String[] tokenize(String phrase) {
+    String trimmed = phrase.trim();
+    return trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+  }
+
+  private static int slot(long key, int mask) {
+    return Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long bytes = RamUsageEstimator.sizeOf(keys) + RamUsageEstimator.sizeOf(targets) + ends.ramBytesUsed();
+    for (Object token : tokens.keySet()) {
+      bytes += RamUsageEstimator.sizeOf((char[]) token);
+    }
+    for (String phrase : phrases) {
+      bytes += RamUsageEstimator.sizeOf(phrase);
+    }
+    return bytes;
+  }
+
+  /**
+   * Collects phrases for a new trie. Single-use and not thread-safe.
+   */
+  public static final class Builder {
+    private final Set<String> phrases = new LinkedHashSet<>();
+
+    /**
+     * @param tokens the tokens of the phrase, as the filter sees them
+     * @throws IllegalArgumentException if the phrase has less than 2 or more than {@link #MAX_TOKENS} tokens
+     */
+    public void add(String[] tokens) {
+      if (tokens.length < 2 || tokens.length > MAX_TOKENS) {
+        throw new IllegalArgumentException("phrases must have 2 to " + MAX_TOKENS + " tokens, ["
+            + String.join(" ", tokens) + "] has " + tokens.length);
+      }
+      phrases.add(String.join(" ", tokens));
+    }
+
+    public PhraseTrie build() {
+      CharArrayMap<Integer> tokens = new CharArrayMap<>(16, false);
+      Map<Long, Integer> edges = new HashMap<>();
+      List<Integer> endNodes = new ArrayList<>();
+      int nodes = 1;
+      int maxTokens = 0;
+      for (String phrase : phrases) {
+        String[] phraseTokens = phrase.split(" ");
+        int node = ROOT;
+        for (String token : phraseTokens) {
+          Integer id = tokens.get(token);
+          if (id == null) {
+            id = tokens.size();
+            tokens.put(token, id);
+          }
+          long key = (long) node << 32 | id;
+          Integer target = edges.get(key);
+          if (target == null) {
+            target = nodes++;
+            edges.put(key, target);
+          }
+          node = target;
+        }
+        endNodes.add(node);
+        maxTokens = Math.max(maxTokens, phraseTokens.length);
+      }
+
+      // at most half full, so that misses stop early
+      int slots = 2;
+      while (slots < edges.size() * 2) {
+        slots <<= 1;
+      }
+      long[] keys = new long[slots];
+      Arrays.fill(keys, -1);
+      int[] targets = new int[slots];
+      for (Map.Entry<Long, Integer> edge : edges.entrySet()) {
+        int slot = slot(edge.getKey(), slots - 1);
+        while (keys[slot] != -1) {
+          slot = (slot + 1) & (slots - 1);
+        }
+        keys[slot] = edge.getKey();
+        targets[slot] = edge.getValue();
+      }
+      FixedBitSet ends = new FixedBitSet(nodes);
+      for (int node : endNodes) {
+        ends.set(node);
+      }
+      return new PhraseTrie(CharArrayMap.unmodifiableMap(tokens), keys, targets, ends,
+          Collections.unmodifiableList(new ArrayList<>(phrases)), maxTokens);
+    }
+  }
+}
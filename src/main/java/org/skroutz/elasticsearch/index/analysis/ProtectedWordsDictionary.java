@@ -0,0 +1,186 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.apache.lucene.util.Accountable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Read-only set of dynamically protected words, probed by {@link WordDelimiterFilter}
+ * directly on the term buffer. Implementations must be safe for concurrent lookups; the
+ * views of {@link #forThread()} are not, and must not allocate per lookup.
+ */
+public interface ProtectedWordsDictionary extends Accountable {
+
+  /** Namespaces of the words that every filter protects, whatever namespaces it selects */
+  long ALL_NAMESPACES = -1L;
+
+  /**
+   * @param text buffer holding the term
+   * @param offset start of the term in the buffer
+   * @param length length of the term
+   * @return {@code true} if the term is a protected word
+   */
+  boolean contains(char[] text, int offset, int length);
+
+  /**
+   * @return a view of this dictionary for the lookups of a single thread, e.g. of one filter, which
+   *         may keep the state of a lookup instead of allocating it, see {@link FSTDictionary}
+   */
+  default ProtectedWordsDictionary forThread() {
+    return this;
+  }
+
+  /**
+   * @return the namespaces the term is protected in, to test against {@link #namespaceMask(Collection)}:
+   *         {@link #ALL_NAMESPACES} for words without namespaces, 0 if the term is not protected
+   */
+  default long namespaces(char[] text, int offset, int length) {
+    return contains(text, offset, length) ? ALL_NAMESPACES : 0;
+  }
+
+  /**
+   * @return the bits {@link #namespaces} sets for the given namespaces in this version of the words,
+   *         see {@link NamespacedDictionary}
+   */
+  default long namespaceMask(Collection<String> namespaces) {
+    return NamespacedDictionary.GLOBAL;
+  }
+
+  /**
+   * @return number of distinct protected words, namespaced ones included
+   */
+  int size();
+
+  /**
+   * Visits every word protected in all namespaces, in no particular order. Meant for copies of
+   * the dictionary, not lookups.
+   */
+  void forEachWord(Consumer<String> action);
+
+  /**
+   * Visits every word protected in some namespaces only, with them, see {@link NamespacedDictionary}.
+   */
+  default void forEachNamespaced(BiConsumer<String, List<String>> action) {
+  }
+
+  /**
+   * Visits every pattern, see {@link PatternDictionary}.
+   */
+  default void forEachPattern(Consumer<String> action) {
+  }
+
+  /**
+   * @return the protected phrases, see {@link PhraseDictionary}
+   */
+  default PhraseTrie phrases() {
+    return PhraseTrie.EMPTY;
+  }
+
+  /**
+   * @return the character type mappings, see {@link TypeMappingDictionary}
+   */
+  default CharTypeMappings typeMappings() {
+    return CharTypeMappings.EMPTY;
+  }
+
+  /**
+   * Collects exact words for a new dictionary, see {@link CharArraySetDictionary} and
+   * {@link FSTDictionary}. Builders are single-use and not thread-safe.
+   */
+  interface WordsBuilder {
+    void add(CharSequence word);
+
+    ProtectedWordsDictionary build();
+  }
+
+  /**
+   * Collects words, namespaced words, patterns, phrases and type mappings for a new dictionary,
+   * see {@link Format#newBuilder()}. Builders are single-use and not thread-safe.
+   */
+  interface Builder extends WordsBuilder {
+    /**
+     * Adds a word protected only by the filters selecting one of {@code namespaces}, or by all of
+     * them if there are none.
+     *
+     * @throws IllegalArgumentException if there are too many namespaces, see {@link NamespacedDictionary}
+     */
+    void add(CharSequence word, Collection<String> namespaces);
+
+    /**
+     * Adds a pattern, see {@link PatternDictionary}.
+     *
+     * @throws IllegalArgumentException if the pattern is invalid or too complex
+     */
+    void addPattern(String pattern);
+
+    /**
+     * Adds a phrase, its tokens separated by whitespace, see {@link PhraseDictionary}.
+     *
+     * @throws IllegalArgumentException if the phrase has too few or too many tokens
+     */
+    void addPhrase(String phrase);
+
+    /**
+     * Adds a character type mapping, e.g. {@code $ => DIGIT}, see {@link TypeMappingDictionary}.
+     *
+     * @throws IllegalArgumentException if the rule is invalid
+     */
+    void addTypeMapping(String rule);
+  }
+
+  /**
+   * In-memory representation used for the dynamic protected words.
+   */
+  enum Format {
+    /** {@link CharArraySetDictionary}: fastest lookups, largest heap footprint */
+    HASH,
+    /** {@link FSTDictionary}: a few times slower lookups, a fraction of the heap */
+    FST;
+
+    public Builder newBuilder() {
+      switch (this) {
+        case FST:
+          return new TypeMappingDictionary.Builder(new PhraseDictionary.Builder(
+              new PatternDictionary.Builder(new NamespacedDictionary.Builder(new FSTDictionary.Builder()))));
+        default:
+          return new TypeMappingDictionary.Builder(new PhraseDictionary.Builder(
+              new PatternDictionary.Builder(new NamespacedDictionary.Builder(new CharArraySetDictionary.Builder()))));
+      }
+    }
+
+    /**
+     * @return the words of {@code dictionary} in this format
+     */
+    public ProtectedWordsDictionary copyOf(ProtectedWordsDictionary dictionary) {
+      ProtectedWordsDictionary words =
+          dictionary instanceof TypeMappingDictionary ? ((TypeMappingDictionary) dictionary).words() : dictionary;
+      if (words instanceof PhraseDictionary) {
+        words = ((PhraseDictionary) words).words();
+      }
+      if (words instanceof PatternDictionary) {
+        words = ((PatternDictionary) words).words();
+      }
+      if (words instanceof NamespacedDictionary) {
+        words = ((NamespacedDictionary) words).words();
+      }
+      if (this == FST && words instanceof FSTDictionary) {
+        return dictionary;
+      }
+      Builder builder = newBuilder();
+      dictionary.forEachWord(builder::add);
+      dictionary.forEachNamespaced(builder::add);
+      dictionary.forEachPattern(builder::addPattern);
+      dictionary.phrases().forEach(builder::addPhrase);
+      dictionary.typeMappings().forEach(builder::addTypeMapping);
+      return builder.build();
+    }
+
+    public static Format fromString(String format) {
+      return valueOf(format.toUpperCase(Locale.ROOT));
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.apache.lucene.analysis.CharacterUtils;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Normalization applied to the dynamic protected words when a dictionary is built, and to every
+ * term before it is looked up, so that one entry protects all the spellings of a word
+ * ({@code 4g}, {@code 4G}, {@code 4Γ} with or without accents). Terms are normalized into a
+ * buffer owned by the caller, nothing is allocated per lookup.
+ */
+public final class ProtectedWordsNormalizer {
+
+  public static final ProtectedWordsNormalizer NONE = new ProtectedWordsNormalizer(EnumSet.noneOf(Step.class));
+
+  public enum Step {
+    /** lower cases every code point */
+    LOWERCASE,
+    /** folds Latin letters, digits and symbols to their ASCII equivalents, see {@link ASCIIFoldingFilter} */
+    ASCII_FOLDING,
+    /** strips the Greek tonos and dialytika and replaces the final sigma, like {@code greek_lowercase} */
+    GREEK;
+
+    public static Step fromString(String step) {
+      return valueOf(step.trim().toUpperCase(Locale.ROOT));
+    }
+
+    @Override
+    public String toString() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  private final Set<Step> steps;
+  private final boolean lowercase;
+  private final boolean asciiFolding;
+  private final boolean greek;
+
+  private ProtectedWordsNormalizer(Set<Step> steps) {
+    this.steps = steps;
+    this.lowercase = steps.contains(Step.LOWERCASE);
+    this.asciiFolding = steps.contains(Step.ASCII_FOLDING);
+    this.greek = steps.contains(Step.GREEK);
+  }
+
+  /**
+   * @param steps comma separated {@link Step}s, in any order
+   */
+  public static ProtectedWordsNormalizer fromString(String steps) {
+    EnumSet<Step> parsed = EnumSet.noneOf(Step.class);
+    for (String step : steps.split(",")) {
+      if (!step.trim().isEmpty()) {
+        parsed.add(Step.fromString(step));
+      }
+    }
+    return parsed.isEmpty() ? NONE : new ProtectedWordsNormalizer(parsed);
+  }
+
+  public boolean isNone() {
+    return steps.isEmpty();
+  }
+
+  /**
+   * @return the size of the buffer {@link #normalize(char[], int, int, char[])} needs for a term of {@code length}
+   */
+  public int maxLength(int length) {
+    // a folded char expands to at most four, e.g. U+2474 to "(1)"
+    return asciiFolding ? 4 * length : length;
+  }
+
+  /**
+   * Writes the normalized form of a term to the start of {@code output}.
+   *
+   * @param output buffer of at least {@link #maxLength(int)} chars
+   * @return the length of the normalized term
+   */
+  public int normalize(char[] text, int offset, int length, char[] output) {
+    int normalized;
+    if (asciiFolding) {
+      normalized = ASCIIFoldingFilter.foldToASCII(text, offset, output, 0, length);
+    } else {
+      System.arraycopy(text, offset, output, 0, length);
+      normalized = length;
+    }
+
+    if (lowercase) {
+      CharacterUtils.toLowerCase(output, 0, normalized);
+    }
+    if (greek) {
+      for (int i = 0; i < normalized; i++) {
+        output[i] = stripGreek(output[i]);
+      }
+    }
+    return normalized;
+  }
+
+  /**
+   * @return the normalized form of a word, for building a dictionary
+   */
+  public String normalize(CharSequence word) {
+    if (isNone()) {
+      return word.toString();
+    }
+    char[] text = word.toString().toCharArray();
+    char[] output = new char[maxLength(text.length)];
+    return new String(output, 0, normalize(text, 0, text.length, output));
+  }
+
+  /**
+   * @return a builder adding the normalized form of every word to {@code builder}
+   */
+  public ProtectedWordsDictionary.Builder wrap(ProtectedWordsDictionary.Builder builder) {
+    if (isNone()) {
+      return builder;
+    }
+    return new ProtectedWordsDictionary.Builder() {
+      @Override
+      public void add(CharSequence word) {
+        builder.add(normalize(word));
+      }
+
+      @Override
+      public void add(CharSequence word, Collection<String> namespaces) {
+        builder.add(normalize(word), namespaces);
+      }
+
+      @Override
+      public void addPattern(String pattern) {
+        // matched against normalized terms, written in their normalized form
+        builder.addPattern(pattern);
+      }
+
+      @Override
+      public void addPhrase(String phrase) {
+        // looked up a token at a time, each one normalized like a word
+        String[] tokens = PhraseTrie.tokenize(phrase);
+        for (int i = 0; i < tokens.length; i++) {
+          tokens[i] = normalize(tokens[i]);
+        }
+        builder.addPhrase(String.join(" ", tokens));
+      }
+
+      @Override
+      public void addTypeMapping(String rule) {
+        // applied to the raw terms, before any normalization
+        builder.addTypeMapping(rule);
+      }
+
+      @Override
+      public ProtectedWordsDictionary build() {
+        return builder.build();
+      }
+    };
+  }
+
+  private static char stripGreek(char c) {
+    switch (c) {
+      case '\u0386': return '\u0391'; // Ά
+      case '\u0388': return '\u0395'; // Έ
+      case '\u0389': return '\u0397'; // Ή
+      case '\u038A': // Ί
+      case '\u03AA': return '\u0399'; // Ϊ
+      case '\u038C': return '\u039F'; // Ό
+      case '\u038E': // Ύ
+      case '\u03AB': return '\u03A5'; // Ϋ
+      case '\u038F': return '\u03A9'; // Ώ
+      case '\u03AC': return '\u03B1'; // ά
+      case '\u03AD': return '\u03B5'; // έ
+      case '\u03AE': return '\u03B7'; // ή
+      case '\u03AF': // ί
+      case '\u03CA': // ϊ
+      case '\u0390': return '\u03B9'; // ΐ
+      case '\u03CC': return '\u03BF'; // ό
+      case '\u03CD': // ύ
+      case '\u03CB': // ϋ
+      case '\u03B0': return '\u03C5'; // ΰ
+      case '\u03CE': return '\u03C9'; // ώ
+      case '\u03C2': return '\u03C3'; // ς
+      default: return c;
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof ProtectedWordsNormalizer && steps.equals(((ProtectedWordsNormalizer) o).steps);
+  }
+
+  @Override
+  public int hashCode() {
+    return steps.hashCode();
+  }
+
+  /**
+   * @return the steps in the form read by {@link #fromString(String)}
+   */
+  @Override
+  public String toString() {
+    return steps.stream().map(Step::toString).collect(Collectors.joining(","));
+  }
+}
@@ -0,0 +1,247 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.elasticsearch.action.support.SplitCacheStats;
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache, shared by the streams of one filter, of the tokens {@link WordDelimiterFilter}
+ * split a term into. Hot terms such as repeated model codes are then replayed without running
+ * the iterator, the concatenations or the buffering of the parts again.
+ * <p>
+ * Only terms that are not protected are split, and the protected words are looked up before the
+ * cache, so entries depend on the term and the configuration of the filter alone and stay valid
+ * across refreshes of the words. The type table a term was split with is the exception: it changes
+ * with the type mappings of the words, and splits made with another table are missed.
+ * <p>
+ * Lookups run on every token of every analysis thread, so the cache takes no lock: terms are
+ * hashed to a set of {@link #WAYS} slots, probed straight from the term buffer, and a new term
+ * replaces an entry of its set not hit since the set was last full of hit entries (an
+ * approximation of LRU). Concurrent puts may overwrite each other, which only costs a miss.
+ */
+public final class SplitCache {
+
+  /** Entries per set, a term can only be kept in the set its hash maps to */
+  static final int WAYS = 4;
+
+  private final AtomicReferenceArray<Split> slots;
+  private final int ways;
+  private final int sets;
+  // 0 if terms are only evicted by size
+  private final long expireNanos;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * @param size maximum number of terms
+   * @param expireAfterAccess evicts terms not split for this long, or {@code null} to keep them until evicted by size
+   */
+  public SplitCache(int size, TimeValue expireAfterAccess) {
+    this.ways = Math.max(1, Math.min(WAYS, size));
+    this.sets = Math.max(1, size / ways);
+    this.slots = new AtomicReferenceArray<>(sets * ways);
+    this.expireNanos = expireAfterAccess == null ? 0 : Math.max(1, expireAfterAccess.nanos());
+  }
+
+  /**
+   * @return the split of the term in {@code text[0, length)} made with {@code typeTable}, or {@code null}
+   */
+  Split get(char[] text, int length, byte[] typeTable) {
+    int hash = hash(text, length);
+    int first = firstSlot(hash);
+    for (int slot = first; slot < first + ways; slot++) {
+      Split split = slots.get(slot);
+      if (split == null || split.hash != hash || !split.matches(text, length)) {
+        continue;
+      }
+      if (split.typeTable == typeTable && !expired(slot, split)) {
+        // written only when it changes, so hot entries do not bounce between the cores
+        if (!split.referenced) {
+          split.referenced = true;
+        }
+        hits.increment();
+        return split;
+      }
+      break;
+    }
+    misses.increment();
+    return null;
+  }
+
+  void put(Split split) {
+    int first = firstSlot(split.hash);
+    int victim = -1;
+    for (int slot = first; slot < first + ways; slot++) {
+      Split current = slots.get(slot);
+      if (current == null || current.hash == split.hash && current.matches(split.term, split.term.length)) {
+        slots.set(slot, split);
+        return;
+      }
+      if (victim < 0 && (!current.referenced || expired(slot, current))) {
+        victim = slot;
+      }
+    }
+    if (victim < 0) {
+      // every entry of the set was hit since the last round: they all lose their mark, one goes
+      for (int slot = first; slot < first + ways; slot++) {
+        Split current = slots.get(slot);
+        if (current != null) {
+          current.referenced = false;
+        }
+      }
+      victim = first + Math.floorMod(split.hash >>> 8, ways);
+    }
+    if (slots.getAndSet(victim, split) != null) {
+      evictions.increment();
+    }
+  }
+
+  private boolean expired(int slot, Split split) {
+    if (expireNanos == 0) {
+      return false;
+    }
+    long now = System.nanoTime();
+    if (now - split.accessedNanos > expireNanos) {
+      if (slots.compareAndSet(slot, split, null)) {
+        evictions.increment();
+      }
+      return true;
+    }
+    // coarse, so that hits rarely write
+    if (now - split.accessedNanos > expireNanos >>> 4) {
+      split.accessedNanos = now;
+    }
+    return false;
+  }
+
+  private int firstSlot(int hash) {
+    return Math.floorMod(hash, sets) * ways;
+  }
+
+  private static int hash(char[] text, int length) {
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + text[i];
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  public SplitCacheStats stats() {
+    int size = 0;
+    for (int slot = 0; slot < slots.length(); slot++) {
+      if (slots.get(slot) != null) {
+        size++;
+      }
+    }
+    return new SplitCacheStats(size, hits.sum(), misses.sum(), evictions.sum());
+  }
+
+  /**
+   * The tokens a term was split into, relative to its start offset. If {@link #original} is set the
+   * term itself was output first, with all its attributes.
+   */
+  static final class Split {
+    final char[] term;
+    final int hash;
+    final boolean original;
+    // compared by identity, tables are shared by the streams using the same version of the words
+    final byte[] typeTable;
+    // the text of token i is text[ends[i - 1], ends[i])
+    final char[] text;
+    final int[] ends;
+    final int[] startOffsets;
+    final int[] endOffsets;
+    final int[] posIncs;
+    // position increment still to be applied to the next token, if no part was output
+    final int accumPosInc;
+    // hit since the entries of its set were last unmarked, see put
+    volatile boolean referenced = false;
+    volatile long accessedNanos = System.nanoTime();
+
+    private Split(char[] term, boolean original, byte[] typeTable, char[] text, int[] ends, int[] startOffsets,
+                  int[] endOffsets, int[] posIncs, int accumPosInc) {
+      this.term = term;
+      this.hash = hash(term, term.length);
+      this.original = original;
+      this.typeTable = typeTable;
+      this.text = text;
+      this.ends = ends;
+      this.startOffsets = startOffsets;
+      this.endOffsets = endOffsets;
+      this.posIncs = posIncs;
+      this.accumPosInc = accumPosInc;
+    }
+
+    boolean matches(char[] other, int length) {
+      if (term.length != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (term[i] != other[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    int size() {
+      return ends.length;
+    }
+
+    int start(int i) {
+      return i == 0 ? 0 : ends[i - 1];
+    }
+  }
+
+  /**
+   * Records the tokens a term is split into, as the filter outputs them.
+   */
+  static final class Recorder {
+    private final char[] term;
+    private final byte[] typeTable;
+    boolean original = false;
+    private char[] text = new char[16];
+    private int length = 0;
+    private int[] ends = new int[4];
+    private int[] startOffsets = new int[4];
+    private int[] endOffsets = new int[4];
+    private int[] posIncs = new int[4];
+    private int size = 0;
+
+    /**
+     * @param buffer the term in {@code buffer[0, termLength)}, copied as the key of the split
+     */
+    Recorder(char[] buffer, int termLength, byte[] typeTable) {
+      this.term = Arrays.copyOf(buffer, termLength);
+      this.typeTable = typeTable;
+    }
+
+    void add(char[] buffer, int termLength, int startOffset, int endOffset, int posInc) {
+      text = ArrayUtil.grow(text, length + termLength);
+      System.arraycopy(buffer, 0, text, length, termLength);
+      length += termLength;
+      if (size == ends.length) {
+        ends = ArrayUtil.grow(ends, size + 1);
+        startOffsets = ArrayUtil.grow(startOffsets, size + 1);
+        endOffsets = ArrayUtil.grow(endOffsets, size + 1);
+        posIncs = ArrayUtil.grow(posIncs, size + 1);
+      }
+      ends[size] = length;
+      startOffsets[size] = startOffset;
+      endOffsets[size] = endOffset;
+      posIncs[size] = posInc;
+      size++;
+    }
+
+    Split finish(int accumPosInc) {
+      return new Split(term, original, typeTable, Arrays.copyOf(text, length), Arrays.copyOf(ends, size),
+          Arrays.copyOf(startOffsets, size), Arrays.copyOf(endOffsets, size), Arrays.copyOf(posIncs, size),
+          accumPosInc);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * {@link ProtectedWordsDictionary} of words plus character type mappings, applied by
+ * {@link WordDelimiterFilter} over its type table for the streams using this version of the
+ * words, see {@link CharTypeMappings}.
+ */
+public final class TypeMappingDictionary implements ProtectedWordsDictionary {
+
+  private final ProtectedWordsDictionary words;
+  private final CharTypeMappings typeMappings;
+
+  private TypeMappingDictionary(ProtectedWordsDictionary words, CharTypeMappings typeMappings) {
+    this.words = words;
+    this.typeMappings = typeMappings;
+  }
+
+  /**
+   * @return {@code words} carrying the type mappings of {@code rules} too
+   * @throws IllegalArgumentException if a rule is invalid
+   */
+  public static ProtectedWordsDictionary withTypeMappings(ProtectedWordsDictionary words, Collection<String> rules) {
+    CharTypeMappings typeMappings = CharTypeMappings.of(rules);
+    return typeMappings.size() == 0 ? words : new TypeMappingDictionary(words, typeMappings);
+  }
+
+  @Override
+  public ProtectedWordsDictionary forThread() {
+    ProtectedWordsDictionary view = words.forThread();
+    return view == words ? this : new TypeMappingDictionary(view, typeMappings);
+  }
+
+  @Override
+  public boolean contains(char[] text, int offset, int length) {
+    return words.contains(text, offset, length);
+  }
+
+  @Override
+  public long namespaces(char[] text, int offset, int length) {
+    return words.namespaces(text, offset, length);
+  }
+
+  @Override
+  public long namespaceMask(Collection<String> namespaces) {
+    return words.namespaceMask(namespaces);
+  }
+
+  /**
+   * @return number of words, mappings are not counted
+   */
+  @Override
+  public int size() {
+    return words.size();
+  }
+
+  @Override
+  public void forEachWord(Consumer<String> action) {
+    words.forEachWord(action);
+  }
+
+  @Override
+  public void forEachNamespaced(BiConsumer<String, List<String>> action) {
+    words.forEachNamespaced(action);
+  }
+
+  @Override
+  public void forEachPattern(Consumer<String> action) {
+    words.forEachPattern(action);
+  }
+
+  @Override
+  public PhraseTrie phrases() {
+    return words.phrases();
+  }
+
+  @Override
+  public CharTypeMappings typeMappings() {
+    return typeMappings;
+  }
+
+  /**
+   * @return the words, patterns and phrases, without the type mappings
+   */
+  public ProtectedWordsDictionary words() {
+    return words;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return words.ramBytesUsed() + typeMappings.ramBytesUsed();
+  }
+
+  /**
+   * Adds the type mappings to the dictionary built by another builder, which holds the words,
+   * patterns and phrases.
+   */
+  static final class Builder implements ProtectedWordsDictionary.Builder {
+    private final PhraseDictionary.Builder words;
+    private final CharTypeMappings.Builder typeMappings = new CharTypeMappings.Builder();
+
+    Builder(PhraseDictionary.Builder words) {
+      this.words = words;
+    }
+
+    @Override
+    public void add(CharSequence word) {
+      words.add(word);
+    }
+
+    @Override
+    public void add(CharSequence word, Collection<String> namespaces) {
+      words.add(word, namespaces);
+    }
+
+    @Override
+    public void addPattern(String pattern) {
+      words.addPattern(pattern);
+    }
+
+    @Override
+    public void addPhrase(String phrase) {
+      words.addPhrase(phrase);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rule is invalid
+     */
+    @Override
+    public void addTypeMapping(String rule) {
+      typeMappings.add(rule);
+    }
+
+    @Override
+    public ProtectedWordsDictionary build() {
+      ProtectedWordsDictionary built = words.build();
+      return typeMappings.isEmpty() ? built : new TypeMappingDictionary(built, typeMappings.build());
+    }
+  }
+}
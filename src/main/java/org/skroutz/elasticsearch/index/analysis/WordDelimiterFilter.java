@@ -19,7 +19,7 @@ package org.skroutz.elasticsearch.index.analysis;
 
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.Set;
+import java.util.Collection;
 
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.analysis.TokenFilter;
@@ -31,7 +31,6 @@ import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import org.apache.lucene.util.ArrayUtil;
-import org.apache.lucene.util.AttributeSource;
 import org.apache.lucene.util.InPlaceMergeSorter;
 import org.elasticsearch.action.support.WordDelimiterActionListener;
 
@@ -162,6 +161,45 @@ public final class WordDelimiterFilter extends TokenFilter {
    */
   final CharArraySet protWords;
 
+  /**
+   * If not null, the protected words loaded from an index, looked up at every token
+   */
+  private final WordDelimiterActionListener dynamicWords;
+  // the version of the dynamic words used for the current stream, resolved at reset()
+  private ProtectedWordsDictionary sharedWords = CharArraySetDictionary.EMPTY;
+  // the view of this filter on sharedWords, kept across streams until the words change
+  private ProtectedWordsDictionary protectedWords = CharArraySetDictionary.EMPTY;
+  // if not null, the namespaces of the dynamic words to protect, resolved to bits at reset()
+  private final Collection<String> namespaces;
+  private long namespaceMask = ProtectedWordsDictionary.ALL_NAMESPACES;
+  private ProtectedWordsNormalizer normalizer = ProtectedWordsNormalizer.NONE;
+  // the term as normalized for the dynamic words, see isDynamicallyProtected
+  private char normalizedBuffer[] = new char[64];
+
+  // the protected phrases of the dynamic words, resolved at reset()
+  private PhraseTrie phrases = PhraseTrie.EMPTY;
+  // tokens left of the phrase being passed through, the current one included
+  private int phraseRemaining = 0;
+  // input tokens read ahead to match a phrase, replayed before reading on with all their attributes.
+  // The term and position increment are also kept apart, to match them against the phrases
+  private final State lookaheadStates[] = new State[PhraseTrie.MAX_TOKENS];
+  private final char lookaheadTerms[][] = new char[PhraseTrie.MAX_TOKENS][];
+  private final int lookaheadLength[] = new int[PhraseTrie.MAX_TOKENS];
+  private final int lookaheadPosInc[] = new int[PhraseTrie.MAX_TOKENS];
+  private int lookaheadLen = 0;
+  private int lookaheadPos = 0;
+  // the input was exhausted while reading ahead
+  private boolean inputDone = false;
+
+  /**
+   * If not null, the splits of hot terms shared by the streams of the filter
+   */
+  private final SplitCache splitCache;
+  // the split being replayed from the cache, or recorded for it
+  private SplitCache.Split replay;
+  private int replayPos;
+  private SplitCache.Recorder recording;
+
   private final int flags;
 
   private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
@@ -171,6 +209,9 @@ public final class WordDelimiterFilter extends TokenFilter {
 
   // used for iterating word delimiter breaks
   private final WordDelimiterIterator iterator;
+  // the type table of the filter, and as overridden by the type mappings of the dynamic words at reset()
+  private final byte[] charTypeTable;
+  private byte[] typeTable;
 
   // used for concatenating runs of similar typed subwords (word,number)
   private final WordDelimiterConcatenation concat = new WordDelimiterConcatenation();
@@ -206,17 +247,68 @@ public final class WordDelimiterFilter extends TokenFilter {
    * @param charTypeTable table containing character types
    * @param configurationFlags Flags configuring the filter
    * @param protWords If not null is the set of tokens to protect from being delimited
+   * @param dynamicWords If not null, the protected words loaded from an index
+   * @param namespaces If not null, only the dynamic words of these namespaces and the ones without namespaces are protected
+   * @param splitCache If not null, caches the splits of the terms
    */
-  public WordDelimiterFilter(TokenStream in, byte[] charTypeTable, int
-          configurationFlags, CharArraySet protWords, int minSplitLength) {
+  public WordDelimiterFilter(TokenStream in, byte[] charTypeTable, int configurationFlags,
+          CharArraySet protWords, WordDelimiterActionListener dynamicWords, Collection<String> namespaces,
+          SplitCache splitCache, int minSplitLength) {
     super(in);
     this.flags = configurationFlags;
     this.protWords = protWords;
+    this.dynamicWords = dynamicWords;
+    this.namespaces = namespaces;
+    this.splitCache = splitCache;
+    this.charTypeTable = this.typeTable = charTypeTable;
     this.iterator = new WordDelimiterIterator(
             charTypeTable, has(SPLIT_ON_CASE_CHANGE), has(SPLIT_ON_NUMERICS), has(STEM_ENGLISH_POSSESSIVE));
     this.minSplitLength = minSplitLength;
   }
 
+  /**
+   * Creates a new WordDelimiterFilter without a split cache
+   *
+   * @param in TokenStream to be filtered
+   * @param charTypeTable table containing character types
+   * @param configurationFlags Flags configuring the filter
+   * @param protWords If not null is the set of tokens to protect from being delimited
+   * @param dynamicWords If not null, the protected words loaded from an index
+   */
+  public WordDelimiterFilter(TokenStream in, byte[] charTypeTable, int configurationFlags,
+          CharArraySet protWords, WordDelimiterActionListener dynamicWords, int minSplitLength) {
+    this(in, charTypeTable, configurationFlags, protWords, dynamicWords, null, null, minSplitLength);
+  }
+
+  /**
+   * Creates a new WordDelimiterFilter protecting the dynamic words of all namespaces
+   *
+   * @param in TokenStream to be filtered
+   * @param charTypeTable table containing character types
+   * @param configurationFlags Flags configuring the filter
+   * @param protWords If not null is the set of tokens to protect from being delimited
+   * @param dynamicWords If not null, the protected words loaded from an index
+   * @param splitCache If not null, caches the splits of the terms
+   */
+  public WordDelimiterFilter(TokenStream in, byte[] charTypeTable, int configurationFlags,
+          CharArraySet protWords, WordDelimiterActionListener dynamicWords, SplitCache splitCache,
+          int minSplitLength) {
+    this(in, charTypeTable, configurationFlags, protWords, dynamicWords, null, splitCache, minSplitLength);
+  }
+
+  /**
+   * Creates a new WordDelimiterFilter without dynamic protected words
+   *
+   * @param in TokenStream to be filtered
+   * @param charTypeTable table containing character types
+   * @param configurationFlags Flags configuring the filter
+   * @param protWords If not null is the set of tokens to protect from being delimited
+   */
+  public WordDelimiterFilter(TokenStream in, byte[] charTypeTable, int
+          configurationFlags, CharArraySet protWords, int minSplitLength) {
+    this(in, charTypeTable, configurationFlags, protWords, null, minSplitLength);
+  }
+
   /**
    * Creates a new WordDelimiterFilter using {@link WordDelimiterIterator#DEFAULT_WORD_DELIM_TABLE}
    * as its charTypeTable
@@ -233,29 +325,56 @@ public final class WordDelimiterFilter extends TokenFilter {
 
   @Override
   public boolean incrementToken() throws IOException {
-    WordDelimiterActionListener wordsListener = WordDelimiterActionListener.getInstance();
-    Set<String> protectedWords = wordsListener.getProtectedWords();
     while (true) {
+      if (replay != null) {
+        if (replayPos < replay.size()) {
+          replayPart(replayPos++);
+          first = false;
+          return true;
+        }
+        // the cached split is over, on to the next input word
+        accumPosInc = replay.accumPosInc;
+        replay = null;
+        continue;
+      }
+
       if (!hasSavedState) {
         // process a new input word
-        if (!input.incrementToken()) {
+        if (!nextInput()) {
           return false;
         }
 
+        // token of a protected phrase: just return it
+        if (phraseRemaining > 0 || startsPhrase()) {
+          phraseRemaining--;
+          accumPosInc += posIncAttribute.getPositionIncrement();
+          posIncAttribute.setPositionIncrement(accumPosInc);
+          accumPosInc = 0;
+          first = false;
+          return true;
+        }
+
         int termLength = termAttribute.length();
         char[] termBuffer = termAttribute.buffer();
 
         accumPosInc += posIncAttribute.getPositionIncrement();
 
+        // plain words and numbers, most of the tokens: just return them
+        if (iterator.isPlainWord(termBuffer, termLength)) {
+          posIncAttribute.setPositionIncrement(accumPosInc);
+          accumPosInc = 0;
+          first = false;
+          return true;
+        }
+
         iterator.setText(termBuffer, termLength);
         iterator.next();
 
         // word of no delimiters, or protected word: just return it
         if ((iterator.current == 0 && iterator.end == termLength) ||
-                (termLength <= minSplitLength && isAlphaNumeric(Arrays
-                        .copyOfRange(termBuffer, 0, termLength))
+                (termLength <= minSplitLength && isAlphaNumeric(termBuffer, termLength)
                 || (protWords != null && protWords.contains(termBuffer, 0, termLength))
-                || protectedWords.contains(termAttribute.toString()))) {
+                || isDynamicallyProtected(termBuffer, termLength))) {
           posIncAttribute.setPositionIncrement(accumPosInc);
           accumPosInc = 0;
           first = false;
@@ -274,6 +393,25 @@ public final class WordDelimiterFilter extends TokenFilter {
 
         saveState();
 
+        // only splits that start at the next position, and without adjusted offsets, are cached
+        if (splitCache != null && accumPosInc == 1 && !hasIllegalOffsets) {
+          SplitCache.Split split = splitCache.get(savedBuffer, termLength, typeTable);
+          if (split != null) {
+            hasSavedState = false;
+            replay = split;
+            replayPos = 0;
+            if (split.original) {
+              posIncAttribute.setPositionIncrement(accumPosInc);
+              accumPosInc = 0;
+              first = false;
+              return true;
+            }
+            continue;
+          }
+          // the key is only copied on a miss
+          recording = new SplitCache.Recorder(savedBuffer, termLength, typeTable);
+        }
+
         hasOutputToken = false;
         hasOutputFollowingOriginal = !has(PRESERVE_ORIGINAL);
         lastConcatCount = 0;
@@ -282,6 +420,9 @@ public final class WordDelimiterFilter extends TokenFilter {
           posIncAttribute.setPositionIncrement(accumPosInc);
           accumPosInc = 0;
           first = false;
+          if (recording != null) {
+            recording.original = true;
+          }
           return true;
         }
       }
@@ -306,11 +447,12 @@ public final class WordDelimiterFilter extends TokenFilter {
         }
 
         if (bufferedPos < bufferedLen) {
-          if (bufferedPos == 0) {
+          if (bufferedPos == 0 && !bufferedSorted) {
             sorter.sort(0, bufferedLen);
           }
-          clearAttributes();
-          restoreState(buffered[bufferedPos++]);
+          emitBuffered(bufferedPos++);
+          // recorded as buffered, the adjustment below depends on the tokens before
+          record();
           if (first && posIncAttribute.getPositionIncrement() == 0) {
             // can easily happen with strange combinations (e.g. not outputting numbers, but concat-all)
             posIncAttribute.setPositionIncrement(1);
@@ -320,8 +462,13 @@ public final class WordDelimiterFilter extends TokenFilter {
         }
 
         // no saved concatenations, on to the next input word
-        bufferedPos = bufferedLen = 0;
+        bufferedPos = bufferedLen = bufferedCharsLen = 0;
+        bufferedSorted = true;
         hasSavedState = false;
+        if (recording != null) {
+          splitCache.put(recording.finish(accumPosInc));
+          recording = null;
+        }
         continue;
       }
 
@@ -329,6 +476,7 @@ public final class WordDelimiterFilter extends TokenFilter {
       if (iterator.isSingleWord()) {
         generatePart(true);
         iterator.next();
+        record();
         first = false;
         return true;
       }
@@ -368,24 +516,213 @@ public final class WordDelimiterFilter extends TokenFilter {
     }
   }
 
+  /**
+   * Looks the term up in the dynamic protected words, normalized the way they were when loaded,
+   * and tests its namespaces against the ones of the filter
+   */
+  private boolean isDynamicallyProtected(char[] termBuffer, int termLength) {
+    if (normalizer.isNone()) {
+      return (protectedWords.namespaces(termBuffer, 0, termLength) & namespaceMask) != 0;
+    }
+    int length = normalize(termBuffer, termLength);
+    return (protectedWords.namespaces(normalizedBuffer, 0, length) & namespaceMask) != 0;
+  }
+
+  /**
+   * Normalizes the term into {@link #normalizedBuffer}
+   *
+   * @return length of the normalized term
+   */
+  private int normalize(char[] termBuffer, int termLength) {
+    int maxLength = normalizer.maxLength(termLength);
+    if (normalizedBuffer.length < maxLength) {
+      normalizedBuffer = new char[ArrayUtil.oversize(maxLength, Character.BYTES)];
+    }
+    return normalizer.normalize(termBuffer, 0, termLength, normalizedBuffer);
+  }
+
+  /**
+   * Moves to the next input token, from the tokens read ahead first
+   */
+  private boolean nextInput() throws IOException {
+    if (lookaheadPos < lookaheadLen) {
+      restoreLookahead(lookaheadPos++);
+      return true;
+    }
+    lookaheadPos = lookaheadLen = 0;
+    return !inputDone && input.incrementToken();
+  }
+
+  /**
+   * Reads ahead, over at most as many tokens as the longest phrase, for the longest phrase that
+   * starts with the current token. A token that starts no phrase costs a single lookup, and
+   * nothing is read ahead for it.
+   *
+   * @return {@code true} if a phrase starts with the current token, its tokens then counted in
+   *         {@link #phraseRemaining}
+   */
+  private boolean startsPhrase() throws IOException {
+    if (phrases.maxTokens() == 0) {
+      return false;
+    }
+    int node = phraseNode(PhraseTrie.ROOT, termAttribute.buffer(), termAttribute.length());
+    if (node == PhraseTrie.NO_MATCH) {
+      return false;
+    }
+
+    // the current token goes first, followed by the ones already read ahead
+    if (lookaheadPos > 0) {
+      for (int slot = lookaheadPos - 1; slot < lookaheadLen; slot++) {
+        moveLookahead(slot, slot - lookaheadPos + 1);
+      }
+      lookaheadLen -= lookaheadPos - 1;
+    } else {
+      storeLookahead(0);
+      lookaheadLen = 1;
+    }
+    lookaheadPos = 1;
+
+    int matched = 0;
+    for (int slot = 1; slot < phrases.maxTokens(); slot++) {
+      if (slot == lookaheadLen) {
+        if (inputDone || !input.incrementToken()) {
+          inputDone = true;
+          break;
+        }
+        storeLookahead(lookaheadLen++);
+      }
+      // phrases do not span holes or stacked tokens
+      if (lookaheadPosInc[slot] != 1) {
+        break;
+      }
+      node = phraseNode(node, lookaheadTerms[slot], lookaheadLength[slot]);
+      if (node == PhraseTrie.NO_MATCH) {
+        break;
+      }
+      if (phrases.isPhrase(node)) {
+        matched = slot + 1;
+      }
+    }
+    restoreLookahead(0);
+    phraseRemaining = matched;
+    return matched > 0;
+  }
+
+  /**
+   * @return the node of the phrases reached from {@code node} with the term, normalized the way
+   *         the phrases were when loaded
+   */
+  private int phraseNode(int node, char[] termBuffer, int termLength) {
+    if (normalizer.isNone()) {
+      return phrases.next(node, termBuffer, 0, termLength);
+    }
+    return phrases.next(node, normalizedBuffer, 0, normalize(termBuffer, termLength));
+  }
+
+  /**
+   * Keeps the token set in the attributes in a slot of the tokens read ahead
+   */
+  private void storeLookahead(int slot) {
+    int length = termAttribute.length();
+    if (lookaheadTerms[slot] == null || lookaheadTerms[slot].length < length) {
+      lookaheadTerms[slot] = new char[ArrayUtil.oversize(length, Character.BYTES)];
+    }
+    System.arraycopy(termAttribute.buffer(), 0, lookaheadTerms[slot], 0, length);
+    lookaheadLength[slot] = length;
+    lookaheadPosInc[slot] = posIncAttribute.getPositionIncrement();
+    lookaheadStates[slot] = captureState();
+  }
+
+  /**
+   * Writes a token read ahead to the attributes
+   */
+  private void restoreLookahead(int slot) {
+    restoreState(lookaheadStates[slot]);
+  }
+
+  /**
+   * Moves a token read ahead to an earlier slot, whose term buffer is reused by the later one
+   */
+  private void moveLookahead(int from, int to) {
+    if (from == to) {
+      return;
+    }
+    char[] term = lookaheadTerms[to];
+    lookaheadTerms[to] = lookaheadTerms[from];
+    lookaheadTerms[from] = term;
+    lookaheadLength[to] = lookaheadLength[from];
+    lookaheadPosInc[to] = lookaheadPosInc[from];
+    lookaheadStates[to] = lookaheadStates[from];
+  }
+
+  /**
+   * Adds the current token to the split being recorded for the cache, if any
+   */
+  private void record() {
+    if (recording != null) {
+      recording.add(termAttribute.buffer(), termAttribute.length(), offsetAttribute.startOffset() - savedStartOffset,
+              offsetAttribute.endOffset() - savedStartOffset, posIncAttribute.getPositionIncrement());
+    }
+  }
+
+  /**
+   * Outputs a part of the cached split being replayed, like {@link #generatePart(boolean)} did when it was recorded
+   */
+  private void replayPart(int part) {
+    clearAttributes();
+    int start = replay.start(part);
+    termAttribute.copyBuffer(replay.text, start, replay.ends[part] - start);
+    offsetAttribute.setOffset(savedStartOffset + replay.startOffsets[part], savedStartOffset + replay.endOffsets[part]);
+    // like buffered parts, a single word is never output first with no increment
+    posIncAttribute.setPositionIncrement(first && replay.posIncs[part] == 0 ? 1 : replay.posIncs[part]);
+    typeAttribute.setType(savedType);
+  }
+
   @Override
   public void reset() throws IOException {
     super.reset();
+    // a single volatile read per stream, a refresh is picked up by the next one
+    ProtectedWordsDictionary words = dynamicWords == null ? CharArraySetDictionary.EMPTY : dynamicWords.getProtectedWords();
+    if (words != sharedWords) {
+      sharedWords = words;
+      protectedWords = words.forThread();
+    }
+    normalizer = dynamicWords == null ? ProtectedWordsNormalizer.NONE : dynamicWords.getNormalizer();
+    // bits are assigned per version of the words
+    namespaceMask = namespaces == null
+        ? ProtectedWordsDictionary.ALL_NAMESPACES : protectedWords.namespaceMask(namespaces);
+    phrases = protectedWords.phrases();
+    // cached per version of the words, so a swap costs a lookup, not a copy of the table
+    typeTable = protectedWords.typeMappings().apply(charTypeTable);
+    iterator.setCharTypeTable(typeTable);
+    phraseRemaining = lookaheadPos = lookaheadLen = 0;
+    Arrays.fill(lookaheadStates, null);
+    inputDone = false;
     hasSavedState = false;
+    replay = null;
+    recording = null;
     concat.clear();
     concatAll.clear();
-    accumPosInc = bufferedPos = bufferedLen = 0;
+    accumPosInc = bufferedPos = bufferedLen = bufferedCharsLen = 0;
+    bufferedSorted = true;
     first = true;
   }
 
   // ================================================= Helper Methods ================================================
 
 
-  private AttributeSource.State buffered[] = new AttributeSource.State[8];
+  // parts waiting to be output in offset order: their terms are kept back to back in bufferedChars
+  private char bufferedChars[] = new char[64];
+  private int termStart[] = new int[8];
+  private int bufferedTermLengths[] = new int[8];
   private int startOff[] = new int[8];
+  private int endOff[] = new int[8];
   private int posInc[] = new int[8];
+  private int bufferedCharsLen = 0;
   private int bufferedLen = 0;
   private int bufferedPos = 0;
+  // parts are mostly generated in offset order already
+  private boolean bufferedSorted = true;
   private boolean first;
 
   private class OffsetSorter extends InPlaceMergeSorter {
@@ -400,35 +737,61 @@ public final class WordDelimiterFilter extends TokenFilter {
 
     @Override
     protected void swap(int i, int j) {
-      AttributeSource.State tmp = buffered[i];
-      buffered[i] = buffered[j];
-      buffered[j] = tmp;
-
-      int tmp2 = startOff[i];
-      startOff[i] = startOff[j];
-      startOff[j] = tmp2;
+      swap(termStart, i, j);
+      swap(bufferedTermLengths, i, j);
+      swap(startOff, i, j);
+      swap(endOff, i, j);
+      swap(posInc, i, j);
+    }
 
-      tmp2 = posInc[i];
-      posInc[i] = posInc[j];
-      posInc[j] = tmp2;
+    private void swap(int[] array, int i, int j) {
+      int tmp = array[i];
+      array[i] = array[j];
+      array[j] = tmp;
     }
   }
 
   final OffsetSorter sorter = new OffsetSorter();
 
+  /**
+   * Buffers the part set in the attributes. Only its term, offsets and position increment are
+   * kept: parts are written on cleared attributes, with the type of the original token.
+   */
   private void buffer() {
-    if (bufferedLen == buffered.length) {
-      int newSize = ArrayUtil.oversize(bufferedLen+1, 8);
-      buffered = Arrays.copyOf(buffered, newSize);
+    if (bufferedLen == posInc.length) {
+      int newSize = ArrayUtil.oversize(bufferedLen+1, Integer.BYTES);
+      termStart = Arrays.copyOf(termStart, newSize);
+      bufferedTermLengths = Arrays.copyOf(bufferedTermLengths, newSize);
       startOff = Arrays.copyOf(startOff, newSize);
+      endOff = Arrays.copyOf(endOff, newSize);
       posInc = Arrays.copyOf(posInc, newSize);
     }
+    int length = termAttribute.length();
+    bufferedChars = ArrayUtil.grow(bufferedChars, bufferedCharsLen + length);
+    System.arraycopy(termAttribute.buffer(), 0, bufferedChars, bufferedCharsLen, length);
+    termStart[bufferedLen] = bufferedCharsLen;
+    bufferedTermLengths[bufferedLen] = length;
+    bufferedCharsLen += length;
     startOff[bufferedLen] = offsetAttribute.startOffset();
+    endOff[bufferedLen] = offsetAttribute.endOffset();
     posInc[bufferedLen] = posIncAttribute.getPositionIncrement();
-    buffered[bufferedLen] = captureState();
+    if (bufferedLen > 0 && sorter.compare(bufferedLen - 1, bufferedLen) > 0) {
+      bufferedSorted = false;
+    }
     bufferedLen++;
   }
 
+  /**
+   * Writes a buffered part to the attributes
+   */
+  private void emitBuffered(int part) {
+    clearAttributes();
+    termAttribute.copyBuffer(bufferedChars, termStart[part], bufferedTermLengths[part]);
+    offsetAttribute.setOffset(startOff[part], endOff[part]);
+    posIncAttribute.setPositionIncrement(posInc[part]);
+    typeAttribute.setType(savedType);
+  }
+
   /**
    * Saves the existing attribute states
    */
@@ -602,9 +965,9 @@ public final class WordDelimiterFilter extends TokenFilter {
     return (flags & flag) != 0;
   }
 
-  private boolean isAlphaNumeric(char[] charArr) {
-    for(char c : charArr) {
-      if(!Character.isLetterOrDigit(c)) {
+  private boolean isAlphaNumeric(char[] charArr, int length) {
+    for (int i = 0; i < length; i++) {
+      if (!Character.isLetterOrDigit(charArr[i])) {
         return false;
       }
     }
@@ -617,7 +980,8 @@ public final class WordDelimiterFilter extends TokenFilter {
    * A WDF concatenated 'run'
    */
   final class WordDelimiterConcatenation {
-    final StringBuilder buffer = new StringBuilder();
+    char buffer[] = new char[32];
+    int length;
     int startOffset;
     int endOffset;
     int type;
@@ -631,7 +995,9 @@ public final class WordDelimiterFilter extends TokenFilter {
      * @param length Length of the text to append
      */
     void append(char text[], int offset, int length) {
-      buffer.append(text, offset, length);
+      buffer = ArrayUtil.grow(buffer, this.length + length);
+      System.arraycopy(text, offset, buffer, this.length, length);
+      this.length += length;
       subwordCount++;
     }
 
@@ -640,13 +1006,7 @@ public final class WordDelimiterFilter extends TokenFilter {
      */
     void write() {
       clearAttributes();
-      if (termAttribute.length() < buffer.length()) {
-        termAttribute.resizeBuffer(buffer.length());
-      }
-      char termbuffer[] = termAttribute.buffer();
-
-      buffer.getChars(0, buffer.length(), termbuffer, 0);
-      termAttribute.setLength(buffer.length());
+      termAttribute.copyBuffer(buffer, 0, length);
 
       if (hasIllegalOffsets) {
         offsetAttribute.setOffset(savedStartOffset, savedEndOffset);
@@ -665,14 +1025,14 @@ public final class WordDelimiterFilter extends TokenFilter {
      * @return {@code true} if the concatenation is empty, {@code false} otherwise
      */
     boolean isEmpty() {
-      return buffer.length() == 0;
+      return length == 0;
     }
 
     /**
      * Clears the concatenation and resets its state
      */
     void clear() {
-      buffer.setLength(0);
+      length = 0;
       startOffset = endOffset = type = subwordCount = 0;
     }
 
@@ -30,6 +30,13 @@ public final class WordDelimiterIterator {
 
   public static final byte[] DEFAULT_WORD_DELIM_TABLE;
 
+  /**
+   * {@link #DEFAULT_WORD_DELIM_TABLE} extended with {@link #getType(int)} to every char of the BMP, so that
+   * no char (Greek included) falls back to {@link Character#getType(int)}. Surrogates keep their
+   * {@code ALPHA|DIGIT} type, the units of a supplementary code point are never split apart.
+   */
+  public static final byte[] BMP_WORD_DELIM_TABLE;
+
   char text[];
   int length;
 
@@ -65,7 +72,7 @@ public final class WordDelimiterIterator {
    */
   final boolean stemEnglishPossessive;
 
-  private final byte[] charTypeTable;
+  private byte[] charTypeTable;
 
   /** if true, need to skip over a possessive found in the last call to next() */
   private boolean skipPossessive = false;
@@ -91,6 +98,13 @@ public final class WordDelimiterIterator {
       tab[i] = code;
     }
     DEFAULT_WORD_DELIM_TABLE = tab;
+
+    byte[] bmp = new byte[Character.MAX_VALUE + 1];
+    System.arraycopy(tab, 0, bmp, 0, tab.length);
+    for (int i = tab.length; i < bmp.length; i++) {
+      bmp[i] = getType(i);
+    }
+    BMP_WORD_DELIM_TABLE = bmp;
   }
 
   /**
@@ -108,6 +122,13 @@ public final class WordDelimiterIterator {
     this.stemEnglishPossessive = stemEnglishPossessive;
   }
 
+  /**
+   * Replaces the table containing character types, for the text set next.
+   */
+  void setCharTypeTable(byte[] charTypeTable) {
+    this.charTypeTable = charTypeTable;
+  }
+
   /**
    * Advance to the next subword in the string.
    *
@@ -150,6 +171,40 @@ public final class WordDelimiterIterator {
   }
 
 
+  /**
+   * Tells, without running the iterator, that a text of only lower case letters, upper case letters
+   * and digits is a single subword, e.g. "phone", "USB", "Samsung" or "2020". It is a fast path for
+   * the most common tokens, mixed texts and any other character type are left to {@link #next()}.
+   *
+   * @return {@code true} if the text is one subword without delimiters, {@code false} if it may not be
+   */
+  boolean isPlainWord(char text[], int length) {
+    int lastType = 0;
+    for (int i = 0; i < length; i++) {
+      int ch = text[i];
+      if (ch >= charTypeTable.length) {
+        return false;
+      }
+      int type = charTypeTable[ch];
+      if (type == LOWER || type == UPPER) {
+        if (splitOnCaseChange && lastType == LOWER && type == UPPER) {
+          return false;
+        }
+        if (splitOnNumerics && lastType == DIGIT) {
+          return false;
+        }
+      } else if (type == DIGIT) {
+        if (splitOnNumerics && (lastType == LOWER || lastType == UPPER)) {
+          return false;
+        }
+      } else {
+        return false;
+      }
+      lastType = type;
+    }
+    return true;
+  }
+
   /**
    * Return the type of the current subword.
    * This currently uses the type of the first character in the subword.
@@ -21,15 +21,20 @@ package org.skroutz.elasticsearch.index.analysis;
 
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.action.support.ProtectedWordsSources;
+import org.elasticsearch.action.support.SplitCaches;
+import org.elasticsearch.action.support.WordDelimiterActionListener;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.AbstractTokenFilterFactory;
 import org.elasticsearch.index.analysis.Analysis;
+import org.elasticsearch.module.WordDelimiterRunnable;
 
+import java.nio.file.Path;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static org.apache.lucene.analysis.miscellaneous.WordDelimiterGraphFilter.CATENATE_ALL;
 import static org.apache.lucene.analysis.miscellaneous.WordDelimiterGraphFilter.CATENATE_NUMBERS;
@@ -47,6 +52,9 @@ public class WordDelimiterTokenFilterFactory extends AbstractTokenFilterFactory
     private final int flags;
     private final CharArraySet protoWords;
     private final int minSplitLength;
+    private final WordDelimiterActionListener dynamicWords;
+    private final List<String> namespaces;
+    private final SplitCache splitCache;
 
     public WordDelimiterTokenFilterFactory(IndexSettings indexSettings, Environment env, String name, Settings settings) {
         super(indexSettings, name, settings);
@@ -58,10 +66,13 @@ public class WordDelimiterTokenFilterFactory extends AbstractTokenFilterFactory
         // \u002C => DIGIT
         // \u200D => ALPHANUM
         List<String> charTypeTableValues = Analysis.getWordList(env, settings, "type_table");
+        // If set, the types of all the chars of the BMP are precomputed, instead of the first 256 only
+        boolean bmpTypeTable = settings.getAsBoolean("bmp_type_table", true);
         if (charTypeTableValues == null) {
-            this.charTypeTable = WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE;
+            this.charTypeTable = bmpTypeTable ?
+                    WordDelimiterIterator.BMP_WORD_DELIM_TABLE : WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE;
         } else {
-            this.charTypeTable = parseTypes(charTypeTableValues);
+            this.charTypeTable = parseTypes(charTypeTableValues, bmpTypeTable);
         }
         int flags = 0;
         // If set, causes parts of words to be generated: "PowerShot" => "Power" "Shot"
@@ -87,6 +98,41 @@ public class WordDelimiterTokenFilterFactory extends AbstractTokenFilterFactory
         this.protoWords = protectedWords == null ? null : CharArraySet.copy(protectedWords);
         this.flags = flags;
         this.minSplitLength = settings.getAsInt("min_split_length", 2);
+        // Analyzers built for no index, e.g. the custom ones of _analyze requests, are never released
+        String owner = indexSettings.getUUID();
+        boolean released = !IndexMetaData.INDEX_UUID_NA_VALUE.equals(owner);
+        // File under the config directory to load dynamic protected words from instead of an index
+        String wordsFile = settings.get("protected_words_file");
+        if (wordsFile != null) {
+            Path configDir = env.configFile().toAbsolutePath().normalize();
+            Path file = configDir.resolve(wordsFile).normalize();
+            // Like the word lists of core filters, every node would read and watch the file otherwise
+            if (!file.startsWith(configDir)) {
+                throw new IllegalArgumentException("protected_words_file [" + wordsFile +
+                        "] must be under the config directory");
+            }
+            this.dynamicWords = released ?
+                    ProtectedWordsSources.acquireFile(file, owner) : ProtectedWordsSources.lookupFile(file);
+        } else {
+            // Index to load dynamic protected words from, shared with every filter naming the same index
+            String wordsIndex = settings.get("protected_words_index", env.settings().get(
+                    "plugin.dynamic_word_delimiter.protected_words_index", WordDelimiterRunnable.INDEX_NAME));
+            this.dynamicWords = released ?
+                    ProtectedWordsSources.acquire(wordsIndex, owner) : ProtectedWordsSources.lookup(wordsIndex);
+        }
+        // If set, only the dynamic words of these namespaces, and the ones without any, are protected
+        this.namespaces = settings.getAsList("protected_words_namespaces", null);
+        // Number of split terms to cache for the streams of this filter, none by default
+        int splitCacheSize = settings.getAsInt("split_cache_size", 0);
+        if (splitCacheSize > 0) {
+            TimeValue expire = settings.getAsTime("split_cache_expire", null);
+            this.splitCache = new SplitCache(splitCacheSize, expire);
+            if (released) {
+                SplitCaches.register(owner, indexSettings.getIndex().getName() + "/" + name, splitCache);
+            }
+        } else {
+            this.splitCache = null;
+        }
     }
 
     @Override
@@ -95,9 +141,19 @@ public class WordDelimiterTokenFilterFactory extends AbstractTokenFilterFactory
                 charTypeTable,
                 flags,
                 protoWords,
+                dynamicWords,
+                namespaces,
+                splitCache,
                 minSplitLength);
     }
 
+    /**
+     * @return the dynamic protected words of the source the filter reads from
+     */
+    public WordDelimiterActionListener getDynamicWords() {
+        return dynamicWords;
+    }
+
     public int getFlag(int flag, Settings settings, String key, boolean defaultValue) {
         if (settings.getAsBoolean(key, defaultValue)) {
             return flag;
@@ -105,94 +161,17 @@ public class WordDelimiterTokenFilterFactory extends AbstractTokenFilterFactory
         return 0;
     }
 
-    // source => type
-    private static Pattern typePattern = Pattern.compile("(.*)\\s*=>\\s*(.*)\\s*$");
-
     /**
      * parses a list of MappingCharFilter style rules into a custom byte[] type table
      */
-    private byte[] parseTypes(Collection<String> rules) {
-        SortedMap<Character, Byte> typeMap = new TreeMap<>();
-        for (String rule : rules) {
-            Matcher m = typePattern.matcher(rule);
-            if (!m.find())
-                throw new RuntimeException("Invalid Mapping Rule : [" + rule + "]");
-            String lhs = parseString(m.group(1).trim());
-            Byte rhs = parseType(m.group(2).trim());
-            if (lhs.length() != 1)
-                throw new RuntimeException("Invalid Mapping Rule : [" + rule + "]. Only a single character is allowed.");
-            if (rhs == null)
-                throw new RuntimeException("Invalid Mapping Rule : [" + rule + "]. Illegal type.");
-            typeMap.put(lhs.charAt(0), rhs);
-        }
+    private byte[] parseTypes(Collection<String> rules, boolean bmpTypeTable) {
+        CharTypeMappings mappings = CharTypeMappings.of(rules);
 
         // ensure the table is always at least as big as DEFAULT_WORD_DELIM_TABLE for performance
-        byte types[] = new byte[Math.max(typeMap.lastKey() + 1, WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE.length)];
+        int minSize = (bmpTypeTable ? WordDelimiterIterator.BMP_WORD_DELIM_TABLE : WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE).length;
+        byte types[] = new byte[Math.max(mappings.maxChar() + 1, minSize)];
         for (int i = 0; i < types.length; i++)
             types[i] = WordDelimiterIterator.getType(i);
-        for (Map.Entry<Character, Byte> mapping : typeMap.entrySet())
-            types[mapping.getKey()] = mapping.getValue();
-        return types;
-    }
-
-    private Byte parseType(String s) {
-        if (s.equals("LOWER"))
-            return WordDelimiterFilter.LOWER;
-        else if (s.equals("UPPER"))
-            return WordDelimiterFilter.UPPER;
-        else if (s.equals("ALPHA"))
-            return WordDelimiterFilter.ALPHA;
-        else if (s.equals("DIGIT"))
-            return WordDelimiterFilter.DIGIT;
-        else if (s.equals("ALPHANUM"))
-            return WordDelimiterFilter.ALPHANUM;
-        else if (s.equals("SUBWORD_DELIM"))
-            return WordDelimiterFilter.SUBWORD_DELIM;
-        else
-            return null;
-    }
-
-    char[] out = new char[256];
-
-    private String parseString(String s) {
-        int readPos = 0;
-        int len = s.length();
-        int writePos = 0;
-        while (readPos < len) {
-            char c = s.charAt(readPos++);
-            if (c == '\\') {
-                if (readPos >= len)
-                    throw new RuntimeException("Invalid escaped char in [" + s + "]");
-                c = s.charAt(readPos++);
-                switch (c) {
-                    case '\\':
-                        c = '\\';
-                        break;
-                    case 'n':
-                        c = '\n';
-                        break;
-                    case 't':
-                        c = '\t';
-                        break;
-                    case 'r':
-                        c = '\r';
-                        break;
-                    case 'b':
-                        c = '\b';
-                        break;
-                    case 'f':
-                        c = '\f';
-                        break;
-                    case 'u':
-                        if (readPos + 3 >= len)
-                            throw new RuntimeException("Invalid escaped char in [" + s + "]");
-                        c = (char) Integer.parseInt(s.substring(readPos, readPos + 4), 16);
-                        readPos += 4;
-                        break;
-                }
-            }
-            out[writePos++] = c;
-        }
-        return new String(out, 0, writePos);
+        return mappings.overlay(types);
     }
 }
\ No newline at end of file
@@ -19,6 +19,8 @@
 
 package org.skroutz.elasticsearch.index.analysis;
 
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.UUIDs;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.analysis.TokenFilterFactory;
 import org.elasticsearch.common.settings.Settings;
@@ -32,9 +34,15 @@ import static org.elasticsearch.test.ESTestCase.createTestAnalysis;
 
 public class AnalysisTestsHelper {
 
+  /**
+   * Builds the filter like the analysis of an index, with a UUID of its own unless the settings set one.
+   */
   public static TokenFilterFactory filterFactory(Settings indexSettings, String filterName) throws IOException {
-
-      TestAnalysis analysis = createTestAnalysis(new Index("test", "_na_"),
+      if (indexSettings.get(IndexMetaData.SETTING_INDEX_UUID) == null) {
+          indexSettings = Settings.builder().put(indexSettings)
+                  .put(IndexMetaData.SETTING_INDEX_UUID, UUIDs.randomBase64UUID()).build();
+      }
+      TestAnalysis analysis = createTestAnalysis(new Index("test", indexSettings.get(IndexMetaData.SETTING_INDEX_UUID)),
               indexSettings, new WordDelimiterPlugin());
 
       return analysis.tokenFilter.get(filterName);
@@ -0,0 +1,83 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.ProtectedWordsSources;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.apache.lucene.analysis.Tokenizer;
+import org.elasticsearch.index.analysis.TokenFilterFactory;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.module.ProtectedWordsMetaData;
+import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.test.ESIntegTestCase;
+import java.io.StringReader;
+import org.elasticsearch.plugin.WordDelimiterPlugin;
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope.Scope;
+
+import static org.elasticsearch.common.settings.Settings.builder;
+
+import static org.elasticsearch.test.ESTokenStreamTestCase.assertTokenStreamContents;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.skroutz.elasticsearch.index.analysis.AnalysisTestsHelper.filterFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+
+@ThreadLeakScope(Scope.NONE)
+// the cluster state holds a custom that only nodes with the plugin can read
+@ESIntegTestCase.ClusterScope(transportClientRatio = 0)
+public class ClusterStateSyncTests extends ESIntegTestCase {
+  private final static String INDEX_NAME = "protected_words";
+  private final static String FILTER_NAME = "my_word_delimiter";
+
+  @Override
+  protected Collection<Class<? extends Plugin>> nodePlugins() {
+    return Collections.singleton(WordDelimiterPlugin.class);
+  }
+
+  @Override
+  protected Settings nodeSettings(int nodeOrdinal) {
+    return builder()
+        .put(super.nodeSettings(nodeOrdinal))
+        .put("plugin.dynamic_word_delimiter.refresh_interval", "500ms")
+        .put("plugin.dynamic_word_delimiter.sync_mode", "cluster_state")
+        .build();
+  }
+
+  public void testPublishWords() throws Exception {
+    Settings indexSettings = builder()
+        .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+        .put("index.analysis.filter.my_word_delimiter.type", "dynamic_word_delimiter")
+        .build();
+    TokenFilterFactory filterFactory = filterFactory(indexSettings, FILTER_NAME);
+
+    // the master publishes the words of the sources used by the filters of an index
+    assertAcked(prepareCreate("products").setSettings(builder()
+        .put("index.analysis.filter.my_word_delimiter.type", "dynamic_word_delimiter")));
+    createIndex(INDEX_NAME);
+    ensureGreen();
+    client().index(new IndexRequest().
+            setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE).
+            index(INDEX_NAME).
+            source("word", "1tb")).get();
+
+    Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
+
+    ProtectedWordsMetaData published = client().admin().cluster().prepareState().get()
+        .getState().metaData().custom(ProtectedWordsMetaData.TYPE);
+    assertNotNull(published);
+    assertEquals(published.sources().get(INDEX_NAME).version(),
+        ProtectedWordsSources.get(INDEX_NAME).publishedVersion());
+    assertEquals(1, ProtectedWordsSources.get(INDEX_NAME).getProtectedWords().size());
+
+    String source = "skliros 1tb";
+    String[] expected = new String[]{"skliros", "1tb"};
+    Tokenizer tokenizer = new WhitespaceTokenizer();
+    tokenizer.setReader(new StringReader(source));
+    assertTokenStreamContents(filterFactory.create(tokenizer), expected);
+  }
+}
@@ -0,0 +1,86 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.ProtectedWordsSources;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.module.ProtectedWordsIndexManager;
+import org.elasticsearch.plugin.WordDelimiterPlugin;
+import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.test.ESIntegTestCase;
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope.Scope;
+
+import static org.elasticsearch.common.settings.Settings.builder;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+@ThreadLeakScope(Scope.NONE)
+@ESIntegTestCase.ClusterScope(numDataNodes = 2, numClientNodes = 0, supportsDedicatedMasters = false,
+    transportClientRatio = 0)
+public class ManagedIndexTests extends ESIntegTestCase {
+  private final static String INDEX_NAME = "protected_words";
+  private final static String OTHER_INDEX_NAME = "managed_protected_words";
+
+  @Override
+  protected Collection<Class<? extends Plugin>> nodePlugins() {
+    return Collections.singleton(WordDelimiterPlugin.class);
+  }
+
+  @Override
+  protected Settings nodeSettings(int nodeOrdinal) {
+    return builder()
+        .put(super.nodeSettings(nodeOrdinal))
+        .put("plugin.dynamic_word_delimiter.refresh_interval", "500ms")
+        .put("plugin.dynamic_word_delimiter.manage_index", true)
+        .put("plugin.dynamic_word_delimiter.doc_values", true)
+        .build();
+  }
+
+  public void testSourcesOnEveryNode() throws Exception {
+    // created by the elected master
+    assertBusy(() -> assertExpanded(INDEX_NAME));
+
+    // named by a filter, and expanded by the elected master
+    assertAcked(prepareCreate(OTHER_INDEX_NAME).setSettings(builder()
+        .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)));
+    assertAcked(prepareCreate("products").setSettings(builder()
+        .put("index.analysis.filter.my_word_delimiter.type", "dynamic_word_delimiter")
+        .put("index.analysis.filter.my_word_delimiter.protected_words_index", OTHER_INDEX_NAME)));
+    assertBusy(() -> assertExpanded(OTHER_INDEX_NAME));
+    ensureGreen(INDEX_NAME, OTHER_INDEX_NAME);
+  }
+
+  public void testLoadFromDocValues() throws Exception {
+    // the mappings of the created index allow fetching the fields from doc values
+    assertBusy(() -> assertExpanded(INDEX_NAME));
+    ensureGreen(INDEX_NAME);
+    client().prepareBulk().setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE)
+        .add(new IndexRequest(INDEX_NAME).source("word", "1tb"))
+        .add(new IndexRequest(INDEX_NAME).source("word", Arrays.asList("4g", "5g")))
+        .add(new IndexRequest(INDEX_NAME).source("pattern", "[0-9]+gb"))
+        .get();
+    assertAcked(prepareCreate("products").setSettings(builder()
+        .put("index.analysis.filter.my_word_delimiter.type", "dynamic_word_delimiter")));
+
+    assertBusy(() -> {
+      ProtectedWordsDictionary words = ProtectedWordsSources.get(INDEX_NAME).getProtectedWords();
+      assertEquals(3, words.size());
+      for (String word : new String[]{"1tb", "4g", "5g", "16gb"}) {
+        assertTrue(word, words.contains(word.toCharArray(), 0, word.length()));
+      }
+    });
+  }
+
+  private void assertExpanded(String index) {
+    IndexMetaData metaData = client().admin().cluster().prepareState().get().getState().metaData().index(index);
+    assertNotNull(metaData);
+    assertEquals(ProtectedWordsIndexManager.AUTO_EXPAND_REPLICAS,
+        metaData.getSettings().get(IndexMetaData.SETTING_AUTO_EXPAND_REPLICAS));
+    assertEquals(cluster().numDataNodes() - 1, metaData.getNumberOfReplicas());
+  }
+}
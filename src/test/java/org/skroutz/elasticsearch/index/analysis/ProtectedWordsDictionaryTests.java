@@ -0,0 +1,499 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.miscellaneous.SetKeywordMarkerFilter;
+import org.apache.lucene.analysis.payloads.DelimitedPayloadTokenFilter;
+import org.apache.lucene.analysis.payloads.IdentityEncoder;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.WordDelimiterActionListener;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+
+public class ProtectedWordsDictionaryTests extends ESTestCase {
+
+  public void testHash() {
+    assertDictionary(ProtectedWordsDictionary.Format.HASH);
+  }
+
+  public void testFST() {
+    assertDictionary(ProtectedWordsDictionary.Format.FST);
+  }
+
+  public void testThreadViewOfWrappedFST() {
+    ProtectedWordsDictionary.Builder builder = ProtectedWordsDictionary.Format.FST.newBuilder();
+    builder.add("4g");
+    builder.addPattern("[0-9]+gb");
+    ProtectedWordsDictionary dictionary = LayeredDictionary.withWords(builder.build(), Collections.singletonList("1tb"));
+
+    ProtectedWordsDictionary view = dictionary.forThread();
+    assertNotSame(dictionary, view);
+    for (String word : Arrays.asList("4g", "512gb", "1tb")) {
+      assertTrue(word, view.contains(word.toCharArray(), 0, word.length()));
+    }
+    assertFalse(view.contains("4k".toCharArray(), 0, 2));
+    assertEquals(dictionary.size(), view.size());
+    // no state to keep, the shared instance serves every thread
+    ProtectedWordsDictionary hash = ProtectedWordsDictionary.Format.HASH.newBuilder().build();
+    assertSame(hash, hash.forThread());
+  }
+
+  public void testEmpty() {
+    for (ProtectedWordsDictionary.Format format : ProtectedWordsDictionary.Format.values()) {
+      ProtectedWordsDictionary dictionary = format.newBuilder().build();
+      assertEquals(0, dictionary.size());
+      assertFalse(dictionary.contains("4g".toCharArray(), 0, 2));
+    }
+  }
+
+  public void testFSTIsSmallerThanHash() {
+    ProtectedWordsDictionary.Builder hash = ProtectedWordsDictionary.Format.HASH.newBuilder();
+    ProtectedWordsDictionary.Builder fst = ProtectedWordsDictionary.Format.FST.newBuilder();
+    for (int i = 0; i < 10000; i++) {
+      String word = "sm-g" + i + "b";
+      hash.add(word);
+      fst.add(word);
+    }
+
+    assertThat(fst.build().ramBytesUsed(), lessThan(hash.build().ramBytesUsed() / 4));
+  }
+
+  public void testLayered() {
+    ProtectedWordsDictionary.Format format = randomFrom(ProtectedWordsDictionary.Format.values());
+    ProtectedWordsDictionary.Builder builder = format.newBuilder();
+    builder.add("1tb");
+    builder.add("4g");
+    ProtectedWordsDictionary base = builder.build();
+
+    ProtectedWordsDictionary layered = LayeredDictionary.withWords(base, Arrays.asList("5g", "4g"));
+    assertEquals(3, layered.size());
+    assertEquals(1, ((LayeredDictionary) layered).additionsSize());
+    layered = LayeredDictionary.withWords(layered, Collections.singletonList("usb3"));
+    assertEquals(4, layered.size());
+    assertEquals(2, ((LayeredDictionary) layered).additionsSize());
+    for (String word : Arrays.asList("1tb", "4g", "5g", "usb3")) {
+      assertTrue(word, layered.contains(word.toCharArray(), 0, word.length()));
+    }
+    assertFalse(layered.contains("3g".toCharArray(), 0, 2));
+    // nothing new, the base is returned as is
+    assertSame(base, LayeredDictionary.withWords(base, Collections.singletonList("1tb")));
+  }
+
+  public void testLayeredOverNamespaced() {
+    ProtectedWordsDictionary.Builder builder = randomFrom(ProtectedWordsDictionary.Format.values()).newBuilder();
+    builder.add("4g");
+    builder.add("1tb", Collections.singletonList("electronics"));
+    builder.add("xl", Collections.singletonList("fashion"));
+    ProtectedWordsDictionary base = builder.build();
+
+    // a namespaced word of the base added again becomes protected in every namespace, but is counted once
+    ProtectedWordsDictionary layered = LayeredDictionary.withWords(base, Arrays.asList("1tb", "5g"));
+    assertEquals(4, layered.size());
+    assertEquals(ProtectedWordsDictionary.ALL_NAMESPACES, namespaces(layered, "1tb"));
+    layered = LayeredDictionary.withWords(layered, Collections.singletonList("usb3"));
+    assertEquals(5, layered.size());
+
+    List<String> words = new ArrayList<>();
+    layered.forEachWord(words::add);
+    List<String> namespaced = new ArrayList<>();
+    layered.forEachNamespaced((word, namespaces) -> namespaced.add(word));
+    assertThat(words, containsInAnyOrder("4g", "1tb", "5g", "usb3"));
+    assertEquals(Collections.singletonList("xl"), namespaced);
+    ProtectedWordsDictionary copy = ProtectedWordsDictionary.Format.HASH.copyOf(layered);
+    assertEquals(layered.size(), copy.size());
+    assertEquals(ProtectedWordsDictionary.ALL_NAMESPACES, namespaces(copy, "1tb"));
+  }
+
+  public void testSaveAndLoadFST() throws Exception {
+    ProtectedWordsDictionary.Builder builder = ProtectedWordsDictionary.Format.FST.newBuilder();
+    for (String word : Arrays.asList("1tb", "4g", "κινητό5")) {
+      builder.add(word);
+    }
+    FSTDictionary fst = (FSTDictionary) builder.build();
+    ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+    fst.save(out);
+
+    FSTDictionary loaded = FSTDictionary.load(out.toDataInput());
+    assertEquals(3, loaded.size());
+    // and converted back to the default format
+    ProtectedWordsDictionary hash = ProtectedWordsDictionary.Format.HASH.copyOf(loaded);
+    assertThat(hash, instanceOf(CharArraySetDictionary.class));
+    for (String word : Arrays.asList("1tb", "4g", "κινητό5")) {
+      assertTrue(word, loaded.contains(word.toCharArray(), 0, word.length()));
+      assertTrue(word, hash.contains(word.toCharArray(), 0, word.length()));
+    }
+    assertEquals(3, hash.size());
+  }
+
+  public void testPatterns() throws Exception {
+    ProtectedWordsDictionary.Format format = randomFrom(ProtectedWordsDictionary.Format.values());
+    ProtectedWordsDictionary.Builder builder = format.newBuilder();
+    builder.add("4g");
+    builder.addPattern("[0-9]+gb");
+    builder.addPattern("usb[0-9]");
+    expectThrows(IllegalArgumentException.class, () -> builder.addPattern("ddr[0-9"));
+    // valid, but too complex to determinize: skipped without failing the build
+    expectThrows(IllegalArgumentException.class, () -> builder.addPattern("(a|b)*a(a|b){16}"));
+    ProtectedWordsDictionary dictionary = builder.build();
+    assertThat(dictionary, instanceOf(PatternDictionary.class));
+    assertEquals(1, dictionary.size());
+
+    for (ProtectedWordsDictionary copy : Arrays.asList(dictionary,
+        ProtectedWordsDictionary.Format.HASH.copyOf(dictionary), ProtectedWordsDictionary.Format.FST.copyOf(dictionary),
+        LayeredDictionary.withWords(dictionary, Collections.singletonList("5g")))) {
+      for (String word : Arrays.asList("4g", "16gb", "1024gb", "usb3")) {
+        char[] buffer = ("x" + word).toCharArray();
+        assertTrue(word, copy.contains(buffer, 1, word.length()));
+      }
+      for (String word : Arrays.asList("gb", "16gbs", "usb", "usb31", "3g")) {
+        assertFalse(word, copy.contains(word.toCharArray(), 0, word.length()));
+      }
+      List<String> patterns = new ArrayList<>();
+      copy.forEachPattern(patterns::add);
+      assertEquals(Arrays.asList("[0-9]+gb", "usb[0-9]"), patterns);
+    }
+
+    // kept when published through a normalizer, and matched against the normalized terms
+    WordDelimiterActionListener words = new WordDelimiterActionListener();
+    words.setNormalizer(ProtectedWordsNormalizer.fromString("lowercase"));
+    words.setPublished(1, dictionary);
+    assertEquals(Arrays.asList("16GB", "USB3", "4G", "USB", "31"), analyze(words, "16GB USB3 4G USB31"));
+  }
+
+  public void testNormalizer() {
+    ProtectedWordsNormalizer normalizer = ProtectedWordsNormalizer.fromString("lowercase, ascii_folding,greek");
+    assertEquals(normalizer, ProtectedWordsNormalizer.fromString(normalizer.toString()));
+    assertTrue(ProtectedWordsNormalizer.fromString("").isNone());
+    expectThrows(IllegalArgumentException.class, () -> ProtectedWordsNormalizer.fromString("uppercase"));
+
+    ProtectedWordsDictionary.Builder builder = normalizer.wrap(randomFrom(ProtectedWordsDictionary.Format.values()).newBuilder());
+    builder.add("4G");
+    builder.add("Κινητός");
+    builder.add("café");
+    ProtectedWordsDictionary dictionary = builder.build();
+    assertEquals(3, dictionary.size());
+
+    for (String term : Arrays.asList("4g", "4G", "ΚΙΝΗΤΟΣ", "κινητος", "κινητός", "CAFE", "Café")) {
+      char[] text = ("xx" + term).toCharArray();
+      char[] normalized = new char[normalizer.maxLength(term.length())];
+      int length = normalizer.normalize(text, 2, term.length(), normalized);
+      assertTrue(term, dictionary.contains(normalized, 0, length));
+    }
+    // folding may expand a char
+    assertEquals("ff", ProtectedWordsNormalizer.fromString("ascii_folding").normalize("\uFB00"));
+  }
+
+  public void testFilterNormalizesTerms() throws Exception {
+    ProtectedWordsDictionary.Builder builder = ProtectedWordsDictionary.Format.HASH.newBuilder();
+    builder.add("4G");
+    builder.add("Wi-Fi");
+    WordDelimiterActionListener words = new WordDelimiterActionListener();
+    words.setNormalizer(ProtectedWordsNormalizer.fromString("lowercase"));
+    words.setPublished(1, builder.build());
+
+    assertEquals(Arrays.asList("router", "4g", "wi-fi", "WI-FI", "4", "k"), analyze(words, "router 4g wi-fi WI-FI 4k"));
+    words.setNormalizer(ProtectedWordsNormalizer.NONE);
+    words.setPublished(2, builder.build());
+    assertEquals(Arrays.asList("4", "g", "Wi-Fi", "wi", "fi"), analyze(words, "4g Wi-Fi wi-fi"));
+  }
+
+  public void testFilterNormalizesTermsForPatterns() throws Exception {
+    // patterns alone, no exact words
+    ProtectedWordsDictionary.Builder builder = randomFrom(ProtectedWordsDictionary.Format.values()).newBuilder();
+    builder.addPattern("[0-9]+gb");
+    WordDelimiterActionListener words = new WordDelimiterActionListener();
+    words.setNormalizer(ProtectedWordsNormalizer.fromString("lowercase"));
+    words.setPublished(1, builder.build());
+
+    assertEquals(Arrays.asList("16GB", "512gb", "4", "k"), analyze(words, "16GB 512gb 4k"));
+  }
+
+  public void testNamespaces() throws Exception {
+    ProtectedWordsDictionary.Builder builder = randomFrom(ProtectedWordsDictionary.Format.values()).newBuilder();
+    builder.add("4g");
+    builder.add("1tb", Collections.singletonList("electronics"));
+    builder.add("xl", Collections.singletonList("fashion"));
+    builder.add("slim2", Arrays.asList("fashion", "electronics"));
+    // protected in every namespace once added without any
+    builder.add("4g", Collections.singletonList("fashion"));
+    builder.addPattern("[0-9]+gb");
+    ProtectedWordsDictionary dictionary = builder.build();
+    assertEquals(4, dictionary.size());
+
+    long electronics = dictionary.namespaceMask(Collections.singletonList("electronics"));
+    long fashion = dictionary.namespaceMask(Arrays.asList("fashion", "groceries"));
+    long groceries = dictionary.namespaceMask(Collections.singletonList("groceries"));
+    for (String word : Arrays.asList("4g", "16gb")) {
+      assertEquals(ProtectedWordsDictionary.ALL_NAMESPACES, namespaces(dictionary, word));
+      assertNotEquals(0, namespaces(dictionary, word) & groceries);
+    }
+    assertNotEquals(0, namespaces(dictionary, "1tb") & electronics);
+    assertEquals(0, namespaces(dictionary, "1tb") & fashion);
+    assertNotEquals(0, namespaces(dictionary, "xl") & fashion);
+    assertEquals(0, namespaces(dictionary, "xl") & electronics);
+    assertNotEquals(0, namespaces(dictionary, "slim2") & electronics);
+    assertNotEquals(0, namespaces(dictionary, "slim2") & fashion);
+    assertEquals(0, namespaces(dictionary, "slim2") & groceries);
+    assertEquals(0, namespaces(dictionary, "5g"));
+
+    // copies keep the namespaces, whatever the bits they end up with
+    ProtectedWordsDictionary copy = ProtectedWordsDictionary.Format.HASH.copyOf(
+        ProtectedWordsDictionary.Format.FST.copyOf(dictionary));
+    assertEquals(0, namespaces(copy, "1tb") & copy.namespaceMask(Collections.singletonList("fashion")));
+    assertNotEquals(0, namespaces(copy, "xl") & copy.namespaceMask(Collections.singletonList("fashion")));
+
+    WordDelimiterActionListener words = new WordDelimiterActionListener();
+    words.setPublished(1, dictionary);
+    assertEquals(Arrays.asList("1tb", "xl", "4g"), analyze(words, Collections.singletonList("electronics"), "1tb xl 4g"));
+    assertEquals(Arrays.asList("1", "tb", "xl", "4g"), analyze(words, Collections.singletonList("fashion"), "1tb xl 4g"));
+    assertEquals(Arrays.asList("1tb", "xl", "4g"), analyze(words, "1tb xl 4g"));
+  }
+
+  public void testPhrases() throws Exception {
+    ProtectedWordsDictionary.Builder builder = randomFrom(ProtectedWordsDictionary.Format.values()).newBuilder();
+    builder.add("4g");
+    builder.addPhrase("galaxy s23");
+    builder.addPhrase(" galaxy  s23 ultra ");
+    builder.addPhrase("wi-fi 6");
+    expectThrows(IllegalArgumentException.class, () -> builder.addPhrase("s23"));
+    expectThrows(IllegalArgumentException.class, () -> builder.addPhrase("a b c d e f g h i"));
+    ProtectedWordsDictionary dictionary = builder.build();
+    assertThat(dictionary, instanceOf(PhraseDictionary.class));
+    assertEquals(1, dictionary.size());
+
+    for (ProtectedWordsDictionary copy : Arrays.asList(dictionary,
+        ProtectedWordsDictionary.Format.HASH.copyOf(dictionary), ProtectedWordsDictionary.Format.FST.copyOf(dictionary),
+        LayeredDictionary.withWords(dictionary, Collections.singletonList("5g")))) {
+      List<String> phrases = new ArrayList<>();
+      copy.phrases().forEach(phrases::add);
+      assertEquals(Arrays.asList("galaxy s23", "galaxy s23 ultra", "wi-fi 6"), phrases);
+      assertEquals(3, copy.phrases().maxTokens());
+    }
+
+    PhraseTrie phrases = dictionary.phrases();
+    int galaxy = next(phrases, PhraseTrie.ROOT, "galaxy");
+    assertFalse(phrases.isPhrase(galaxy));
+    assertTrue(phrases.isPhrase(next(phrases, galaxy, "s23")));
+    assertEquals(PhraseTrie.NO_MATCH, next(phrases, PhraseTrie.ROOT, "s23"));
+    assertEquals(PhraseTrie.NO_MATCH, next(phrases, galaxy, "galaxy"));
+
+    WordDelimiterActionListener words = new WordDelimiterActionListener();
+    words.setPublished(1, dictionary);
+    assertEquals(Arrays.asList("galaxy", "s23", "s", "23", "galaxy", "s23", "ultra", "galaxy", "s", "23"),
+        analyze(words, "galaxy s23 s23 galaxy s23 ultra galaxy-s23"));
+    assertEquals(Arrays.asList("wi", "fi", "wi-fi", "6", "4g", "galaxy", "s", "22", "galaxy"),
+        analyze(words, "wi-fi wi-fi 6 4g galaxy s22 galaxy"));
+
+    // looked up a token at a time, normalized like the words
+    words.setNormalizer(ProtectedWordsNormalizer.fromString("lowercase"));
+    words.setPublished(2, dictionary);
+    assertEquals(Arrays.asList("Galaxy", "S23", "Ultra"), analyze(words, "Galaxy S23 Ultra"));
+  }
+
+  public void testPhrasesKeepAttributes() throws Exception {
+    ProtectedWordsDictionary.Builder builder = randomFrom(ProtectedWordsDictionary.Format.values()).newBuilder();
+    builder.addPhrase("galaxy s23");
+    WordDelimiterActionListener words = new WordDelimiterActionListener();
+    words.setPublished(1, builder.build());
+
+    // galaxy starts a phrase, phone is read ahead and does not continue it: both are replayed
+    WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+    tokenizer.setReader(new StringReader("galaxy|a phone|b"));
+    TokenStream input = new SetKeywordMarkerFilter(new DelimitedPayloadTokenFilter(tokenizer, '|', new IdentityEncoder()),
+        new CharArraySet(Collections.singleton("galaxy"), false));
+    List<String> tokens = new ArrayList<>();
+    try (TokenStream stream = new WordDelimiterFilter(input, WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE,
+        WordDelimiterFilter.GENERATE_WORD_PARTS, null, words, null, null, 1)) {
+      CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+      PayloadAttribute payload = stream.addAttribute(PayloadAttribute.class);
+      KeywordAttribute keyword = stream.addAttribute(KeywordAttribute.class);
+      stream.reset();
+      while (stream.incrementToken()) {
+        tokens.add(term + " " + payload.getPayload().utf8ToString() + " " + keyword.isKeyword());
+      }
+      stream.end();
+    }
+    assertEquals(Arrays.asList("galaxy a true", "phone b false"), tokens);
+  }
+
+  public void testTypeMappings() throws Exception {
+    ProtectedWordsDictionary.Builder builder = randomFrom(ProtectedWordsDictionary.Format.values()).newBuilder();
+    builder.add("4g");
+    builder.addTypeMapping("$ => ALPHA");
+    builder.addTypeMapping("$ => DIGIT");
+    builder.addTypeMapping("\\u002C => DIGIT");
+    builder.addTypeMapping("\\u20AC => DIGIT");
+    expectThrows(IllegalArgumentException.class, () -> builder.addTypeMapping("$$ => DIGIT"));
+    expectThrows(IllegalArgumentException.class, () -> builder.addTypeMapping("$ => NUMBER"));
+    expectThrows(IllegalArgumentException.class, () -> builder.addTypeMapping("$"));
+    ProtectedWordsDictionary dictionary = builder.build();
+    assertThat(dictionary, instanceOf(TypeMappingDictionary.class));
+    assertEquals(1, dictionary.size());
+
+    for (ProtectedWordsDictionary copy : Arrays.asList(dictionary,
+        ProtectedWordsDictionary.Format.HASH.copyOf(dictionary), ProtectedWordsDictionary.Format.FST.copyOf(dictionary),
+        LayeredDictionary.withWords(dictionary, Collections.singletonList("5g")))) {
+      List<String> rules = new ArrayList<>();
+      copy.typeMappings().forEach(rules::add);
+      assertEquals(Arrays.asList("$ => DIGIT", "\\u002C => DIGIT", "\\u20AC => DIGIT"), rules);
+    }
+
+    // grown to the highest mapped char, and computed once per table
+    CharTypeMappings typeMappings = dictionary.typeMappings();
+    byte[] table = typeMappings.apply(WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE);
+    assertEquals('\u20AC' + 1, table.length);
+    assertEquals(WordDelimiterFilter.DIGIT, table['$']);
+    assertEquals(WordDelimiterIterator.getType('\u00FF' + 1), table['\u00FF' + 1]);
+    assertSame(table, typeMappings.apply(WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE));
+    assertSame(WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE,
+        CharTypeMappings.EMPTY.apply(WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE));
+
+    // applied by the next stream, cached splits made with the previous table are missed
+    WordDelimiterActionListener words = new WordDelimiterActionListener();
+    SplitCache splitCache = new SplitCache(10, null);
+    assertEquals(Arrays.asList("100", "1", "5", "20"), analyze(words, null, splitCache, "$100 1,5 20€"));
+    words.setPublished(1, dictionary);
+    assertEquals(Arrays.asList("$100", "1,5", "20€"), analyze(words, null, splitCache, "$100 1,5 20€"));
+    words.setPublished(2, ProtectedWordsDictionary.Format.HASH.newBuilder().build());
+    assertEquals(Arrays.asList("100", "1", "5", "20"), analyze(words, null, splitCache, "$100 1,5 20€"));
+  }
+
+  public void testSnapshots() throws Exception {
+    WordDelimiterActionListener words = new WordDelimiterActionListener();
+    int versions = 200;
+    Thread writer = new Thread(() -> {
+      ProtectedWordsDictionary.Builder builder = ProtectedWordsDictionary.Format.HASH.newBuilder();
+      for (int version = 1; version <= versions; version++) {
+        builder.add("word" + version);
+        words.setPublished(version, builder.build());
+      }
+    });
+    writer.start();
+
+    // every version is seen whole, with its words
+    long last = 0;
+    while (last < versions) {
+      WordDelimiterActionListener.Snapshot snapshot = words.getSnapshot();
+      assertEquals(snapshot.getVersion(), snapshot.getWords().size());
+      assertTrue(snapshot.getVersion() >= last);
+      last = snapshot.getVersion();
+    }
+    writer.join();
+  }
+
+  public void testStaleLoadIsDropped() {
+    WordDelimiterActionListener words = new WordDelimiterActionListener();
+    ActionListener<SearchResponse> older = words.startLoad(true);
+    ActionListener<SearchResponse> newer = words.startLoad(true);
+    assertTrue(words.finishLoad(newer));
+    long version = words.getSnapshot().getVersion();
+    assertTrue(words.finishLoad(older));
+    assertEquals(version, words.getSnapshot().getVersion());
+
+    // nor may a load overwrite a version published while it ran
+    ActionListener<SearchResponse> load = words.startLoad(true);
+    ProtectedWordsDictionary.Builder builder = ProtectedWordsDictionary.Format.HASH.newBuilder();
+    builder.add("wi-fi");
+    words.setPublished(10, builder.build());
+    assertTrue(words.finishLoad(load));
+    assertEquals(10, words.getSnapshot().getVersion());
+    assertEquals(1, words.getProtectedWords().size());
+
+    assertTrue(words.finishLoad(words.startLoad(true)));
+    assertEquals(0, words.getProtectedWords().size());
+  }
+
+  private static int next(PhraseTrie phrases, int node, String token) {
+    return phrases.next(node, token.toCharArray(), 0, token.length());
+  }
+
+  private static long namespaces(ProtectedWordsDictionary dictionary, String word) {
+    return dictionary.namespaces(word.toCharArray(), 0, word.length());
+  }
+
+  private static List<String> analyze(WordDelimiterActionListener words, String text) throws Exception {
+    return analyze(words, null, text);
+  }
+
+  private static List<String> analyze(WordDelimiterActionListener words, List<String> namespaces, String text)
+      throws Exception {
+    return analyze(words, namespaces, null, text);
+  }
+
+  private static List<String> analyze(WordDelimiterActionListener words, List<String> namespaces,
+                                      SplitCache splitCache, String text) throws Exception {
+    WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+    tokenizer.setReader(new StringReader(text));
+    List<String> terms = new ArrayList<>();
+    try (TokenStream stream = new WordDelimiterFilter(tokenizer, WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE,
+        WordDelimiterFilter.GENERATE_WORD_PARTS | WordDelimiterFilter.GENERATE_NUMBER_PARTS
+            | WordDelimiterFilter.SPLIT_ON_NUMERICS, null, words, namespaces, splitCache, 1)) {
+      CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+      stream.reset();
+      while (stream.incrementToken()) {
+        terms.add(term.toString());
+      }
+      stream.end();
+    }
+    return terms;
+  }
+
+  private void assertDictionary(ProtectedWordsDictionary.Format format) {
+    Set<String> expected = new HashSet<>();
+    ProtectedWordsDictionary.Builder builder = format.newBuilder();
+    int numWords = randomIntBetween(1, 500);
+    for (int i = 0; i < numWords; i++) {
+      String word = randomWord();
+      expected.add(word);
+      builder.add(word);
+    }
+    // duplicates are ignored
+    builder.add(expected.iterator().next());
+    ProtectedWordsDictionary dictionary = builder.build();
+    // the view of a filter answers like the shared instance
+    ProtectedWordsDictionary view = dictionary.forThread();
+
+    assertEquals(expected.size(), dictionary.size());
+    for (String word : expected) {
+      // probe with the word in the middle of a larger buffer
+      char[] buffer = ("xx" + word + "yy").toCharArray();
+      assertTrue(word, dictionary.contains(buffer, 2, word.length()));
+      assertTrue(word, view.contains(buffer, 2, word.length()));
+    }
+    for (int i = 0; i < 500; i++) {
+      String word = randomWord();
+      assertEquals(word, expected.contains(word), dictionary.contains(word.toCharArray(), 0, word.length()));
+      assertEquals(word, expected.contains(word), view.contains(word.toCharArray(), 0, word.length()));
+    }
+  }
+
+  private static String randomWord() {
+    switch (randomIntBetween(0, 3)) {
+      case 0:
+        return randomAlphaOfLengthBetween(1, 4) + randomIntBetween(0, 999);
+      case 1:
+        return randomFrom("κινητό", "τηλέφωνο", "ΦΑΚΟΣ") + randomIntBetween(0, 9);
+      case 2:
+        return randomRealisticUnicodeOfCodepointLengthBetween(1, 6);
+      default:
+        return randomAlphaOfLengthBetween(1, 3);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.elasticsearch.action.support.ProtectedWordsSources;
+import org.elasticsearch.action.support.WordDelimiterActionListener;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.module.ProtectedWordsFiles;
+import org.elasticsearch.module.ProtectedWordsSnapshots;
+import org.elasticsearch.module.WordDelimiterRunnable;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ProtectedWordsFilesTests extends ESTestCase {
+
+  private ThreadPool threadPool;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    threadPool = new TestThreadPool(getTestName(), new FixedExecutorBuilder(Settings.EMPTY,
+        WordDelimiterRunnable.EXECUTOR, 1, -1, "thread_pool." + WordDelimiterRunnable.EXECUTOR));
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+    super.tearDown();
+  }
+
+  public void testReloadTextFile() throws Exception {
+    Path file = createTempDir().resolve("protected_words.txt").toAbsolutePath().normalize();
+    Files.write(file, Arrays.asList("# model codes", "4g", "", "  1tb "), StandardCharsets.UTF_8);
+
+    try (ProtectedWordsFiles files = new ProtectedWordsFiles(threadPool)) {
+      ProtectedWordsSources.setFileLoader(files::load);
+      try {
+        WordDelimiterActionListener words = ProtectedWordsSources.acquireFile(file, "owner");
+        assertEquals(2, words.getProtectedWords().size());
+        assertTrue(contains(words, "1tb"));
+
+        files.start();
+        Files.write(file, Arrays.asList("4g", "1tb", "sm-g991b"), StandardCharsets.UTF_8);
+        assertBusy(() -> assertTrue(contains(words, "sm-g991b")));
+        assertEquals(3, words.getProtectedWords().size());
+      } finally {
+        ProtectedWordsSources.setFileLoader((f, w) -> {});
+        ProtectedWordsSources.release("owner");
+      }
+    }
+  }
+
+  public void testLoadInBackground() throws Exception {
+    Path directory = createTempDir().toAbsolutePath().normalize();
+    Path file = directory.resolve("protected_words.txt");
+    Files.write(file, Arrays.asList("4g", "1tb"), StandardCharsets.UTF_8);
+
+    try (ProtectedWordsFiles files = new ProtectedWordsFiles(threadPool)) {
+      List<Runnable> pending = new ArrayList<>();
+      ProtectedWordsSources.setFileLoader(files::load);
+      ProtectedWordsSources.setExecutor(pending::add);
+      try {
+        // registered right away, empty until loaded
+        WordDelimiterActionListener words = ProtectedWordsSources.acquireFile(file, "owner");
+        assertEquals(0, words.getProtectedWords().size());
+        WordDelimiterActionListener missing = ProtectedWordsSources.acquireFile(directory.resolve("missing.txt"), "owner");
+        assertEquals(2, pending.size());
+
+        pending.forEach(Runnable::run);
+        assertEquals(2, words.getProtectedWords().size());
+        assertEquals(1, missing.stats().getFailures());
+      } finally {
+        ProtectedWordsSources.setFileLoader((f, w) -> {});
+        ProtectedWordsSources.setExecutor(Runnable::run);
+        ProtectedWordsSources.release("owner");
+      }
+    }
+  }
+
+  public void testBinaryFile() throws Exception {
+    ProtectedWordsDictionary.Builder builder = ProtectedWordsDictionary.Format.HASH.newBuilder();
+    for (String word : Arrays.asList("1tb", "4g", "κινητό5")) {
+      builder.add(word);
+    }
+    WordDelimiterActionListener saved = new WordDelimiterActionListener();
+    saved.setPublished(1, builder.build());
+    // the snapshot a node wrote for an index, copied under the config directory
+    Path dataPath = createTempDir();
+    try (ProtectedWordsSnapshots snapshots = new ProtectedWordsSnapshots(dataPath)) {
+      snapshots.write(Collections.singletonMap("protected_words", saved));
+    }
+    Path file = dataPath.resolve(ProtectedWordsSnapshots.DIRECTORY).resolve("protected_words.words");
+
+    try (ProtectedWordsFiles files = new ProtectedWordsFiles(threadPool)) {
+      WordDelimiterActionListener words = new WordDelimiterActionListener();
+      files.load(file, words);
+      assertEquals(3, words.getProtectedWords().size());
+      assertTrue(contains(words, "κινητό5"));
+
+      byte[] bytes = Files.readAllBytes(file);
+      bytes[bytes.length - 1] ^= 0x1;
+      Files.write(file, bytes);
+      expectThrows(IllegalArgumentException.class, () -> files.load(file, words));
+      // the words of a corrupt file are never swapped in
+      assertEquals(3, words.getProtectedWords().size());
+    }
+  }
+
+  private static boolean contains(WordDelimiterActionListener words, String word) {
+    return words.getProtectedWords().contains(word.toCharArray(), 0, word.length());
+  }
+}
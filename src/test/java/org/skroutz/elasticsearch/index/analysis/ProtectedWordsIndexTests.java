@@ -1,6 +1,10 @@
 package org.skroutz.elasticsearch.index.analysis;
 
 import org.elasticsearch.Version;
+import org.elasticsearch.action.analyze.WordDelimiterAnalyzeAction;
+import org.elasticsearch.action.analyze.WordDelimiterAnalyzeRequest;
+import org.elasticsearch.action.analyze.WordDelimiterAnalyzeResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
@@ -14,7 +18,11 @@ import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.test.ESIntegTestCase;
 import java.io.StringReader;
-import org.elasticsearch.action.support.WordDelimiterActionListener;
+import org.elasticsearch.action.stats.WordDelimiterStatsAction;
+import org.elasticsearch.action.stats.WordDelimiterStatsRequest;
+import org.elasticsearch.action.stats.WordDelimiterStatsResponse;
+import org.elasticsearch.action.support.ProtectedWordsSources;
+import org.elasticsearch.action.support.ProtectedWordsStats;
 import org.elasticsearch.plugin.WordDelimiterPlugin;
 import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
 import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope.Scope;
@@ -22,16 +30,25 @@ import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope.Scope;
 import static org.elasticsearch.common.settings.Settings.builder;
 
 import static org.elasticsearch.test.ESTokenStreamTestCase.assertTokenStreamContents;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.skroutz.elasticsearch.index.analysis.AnalysisTestsHelper.filterFactory;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Set;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @ThreadLeakScope(Scope.NONE)
+// every node refreshes the same words, keep a single one so that refreshes do not race, and
+// transport clients do not know the actions of the plugin
+@ESIntegTestCase.ClusterScope(numDataNodes = 1, numClientNodes = 0, supportsDedicatedMasters = false,
+    transportClientRatio = 0)
 public class ProtectedWordsIndexTests extends ESIntegTestCase {
-  private final WordDelimiterActionListener wordsListener = WordDelimiterActionListener.getInstance();
   private final static String INDEX_NAME = "protected_words";
+  private final static String OTHER_INDEX_NAME = "other_protected_words";
   private final static String FILTER_NAME = "my_word_delimiter";
 
   @Override
@@ -44,6 +61,7 @@ public class ProtectedWordsIndexTests extends ESIntegTestCase {
     return builder()
         .put(super.nodeSettings(nodeOrdinal))
         .put("plugin.dynamic_word_delimiter.refresh_interval", "500ms")
+        .put("plugin.dynamic_word_delimiter.page_size", 2)
         .build();
   }
 
@@ -64,7 +82,7 @@ public class ProtectedWordsIndexTests extends ESIntegTestCase {
 
     Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
 
-    Set<String> protectedWords = wordsListener.getProtectedWords();
+    ProtectedWordsDictionary protectedWords = protectedWords(INDEX_NAME);
     assertEquals(1, protectedWords.size());
 
     String source = "skliros 1tb";
@@ -74,6 +92,281 @@ public class ProtectedWordsIndexTests extends ESIntegTestCase {
     assertTokenStreamContents(filterFactory.create(tokenizer), expected);
   }
   
+  public void testAddWordsIncrementally() throws Exception {
+    Settings indexSettings = builder()
+        .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+        .put("index.analysis.filter.my_word_delimiter.type", "dynamic_word_delimiter")
+        .build();
+    TokenFilterFactory filterFactory = filterFactory(indexSettings, FILTER_NAME);
+
+    createIndex(INDEX_NAME);
+    ensureGreen();
+    client().index(new IndexRequest().
+            setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE).
+            index(INDEX_NAME).
+            source("word", "1tb")).get();
+
+    Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
+
+    client().index(new IndexRequest().
+            setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE).
+            index(INDEX_NAME).
+            source("word", "4g")).get();
+
+    Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
+
+    ProtectedWordsDictionary protectedWords = protectedWords(INDEX_NAME);
+    assertEquals(2, protectedWords.size());
+    // the second word was applied on top of the first load
+    assertThat(protectedWords, instanceOf(LayeredDictionary.class));
+
+    String source = "skliros 1tb 4g";
+    String[] expected = new String[]{"skliros", "1tb", "4g"};
+    Tokenizer tokenizer = new WhitespaceTokenizer();
+    tokenizer.setReader(new StringReader(source));
+    assertTokenStreamContents(filterFactory.create(tokenizer), expected);
+  }
+
+  public void testAddMultiValuedWordsIncrementally() throws Exception {
+    Settings indexSettings = builder()
+        .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+        .put("index.analysis.filter.my_word_delimiter.type", "dynamic_word_delimiter")
+        .build();
+    TokenFilterFactory filterFactory = filterFactory(indexSettings, FILTER_NAME);
+
+    createIndex(INDEX_NAME);
+    ensureGreen();
+    client().index(new IndexRequest().
+            setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE).
+            index(INDEX_NAME).
+            source("word", "1tb")).get();
+
+    Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
+
+    client().index(new IndexRequest().
+            setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE).
+            index(INDEX_NAME).
+            source("word", Arrays.asList("4g", "8gb"))).get();
+
+    Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
+
+    ProtectedWordsDictionary protectedWords = protectedWords(INDEX_NAME);
+    assertEquals(3, protectedWords.size());
+    // one new document, though with two words, is still a delta
+    assertThat(protectedWords, instanceOf(LayeredDictionary.class));
+
+    String source = "skliros 1tb 4g 8gb";
+    String[] expected = new String[]{"skliros", "1tb", "4g", "8gb"};
+    Tokenizer tokenizer = new WhitespaceTokenizer();
+    tokenizer.setReader(new StringReader(source));
+    assertTokenStreamContents(filterFactory.create(tokenizer), expected);
+  }
+
+  public void testRemoveWordWhileAddingDocuments() throws Exception {
+    Settings indexSettings = builder()
+        .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+        .put("index.analysis.filter.my_word_delimiter.type", "dynamic_word_delimiter")
+        .build();
+    TokenFilterFactory filterFactory = filterFactory(indexSettings, FILTER_NAME);
+
+    createIndex(INDEX_NAME);
+    ensureGreen();
+    client().prepareBulk().setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE)
+        .add(new IndexRequest(INDEX_NAME).id("1").source("word", "1tb"))
+        .add(new IndexRequest(INDEX_NAME).id("2").source("word", "4gb"))
+        .get();
+
+    Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
+
+    assertEquals(2, protectedWords(INDEX_NAME).size());
+
+    // three new documents and a delete grow the index by two, as many as the new words
+    client().prepareBulk().setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE)
+        .add(new IndexRequest(INDEX_NAME).source("word", Arrays.asList("8gb", "16gb")))
+        .add(new IndexRequest(INDEX_NAME).source("comment", "no words"))
+        .add(new IndexRequest(INDEX_NAME).source("comment", "no words either"))
+        .add(new DeleteRequest(INDEX_NAME, "2"))
+        .get();
+
+    Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
+
+    ProtectedWordsDictionary protectedWords = protectedWords(INDEX_NAME);
+    assertEquals(3, protectedWords.size());
+
+    String source = "skliros 1tb 4gb 8gb";
+    String[] expected = new String[]{"skliros", "1tb", "4", "gb", "8gb"};
+    Tokenizer tokenizer = new WhitespaceTokenizer();
+    tokenizer.setReader(new StringReader(source));
+    assertTokenStreamContents(filterFactory.create(tokenizer), expected);
+  }
+
+  public void testAddPatternsToIndex() throws Exception {
+    Settings indexSettings = builder()
+        .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+        .put("index.analysis.filter.my_word_delimiter.type", "dynamic_word_delimiter")
+        .build();
+    TokenFilterFactory filterFactory = filterFactory(indexSettings, FILTER_NAME);
+
+    createIndex(INDEX_NAME);
+    ensureGreen();
+    client().prepareBulk().setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE)
+        .add(new IndexRequest(INDEX_NAME).source("word", "4g"))
+        .add(new IndexRequest(INDEX_NAME).source("pattern", "[0-9]+gb"))
+        .add(new IndexRequest(INDEX_NAME).source("pattern", "rtx[0-9]{4}"))
+        // invalid, skipped
+        .add(new IndexRequest(INDEX_NAME).source("pattern", "usb[0-9"))
+        .get();
+
+    Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
+
+    ProtectedWordsDictionary protectedWords = protectedWords(INDEX_NAME);
+    assertEquals(1, protectedWords.size());
+    assertThat(protectedWords, instanceOf(PatternDictionary.class));
+
+    String source = "4g 16gb 512gb rtx3080 rtx308 usb3";
+    String[] expected = new String[]{"4g", "16gb", "512gb", "rtx3080", "rtx", "308", "usb", "3"};
+    Tokenizer tokenizer = new WhitespaceTokenizer();
+    tokenizer.setReader(new StringReader(source));
+    assertTokenStreamContents(filterFactory.create(tokenizer), expected);
+  }
+
+  public void testLoadWordsInPages() throws Exception {
+    Settings indexSettings = builder()
+        .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+        .put("index.analysis.filter.my_word_delimiter.type", "dynamic_word_delimiter")
+        .build();
+    TokenFilterFactory filterFactory = filterFactory(indexSettings, FILTER_NAME);
+
+    createIndex(INDEX_NAME);
+    ensureGreen();
+    String[] words = new String[]{"1tb", "4g", "5g", "8gb", "16gb"};
+    BulkRequestBuilder bulk = client().prepareBulk().setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
+    for (String word : words) {
+      bulk.add(new IndexRequest().index(INDEX_NAME).source("word", word));
+    }
+    assertFalse(bulk.get().hasFailures());
+
+    Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
+
+    // more words than fit in a page
+    ProtectedWordsDictionary protectedWords = protectedWords(INDEX_NAME);
+    assertEquals(words.length, protectedWords.size());
+
+    String source = "skliros 1tb 16gb";
+    String[] expected = new String[]{"skliros", "1tb", "16gb"};
+    Tokenizer tokenizer = new WhitespaceTokenizer();
+    tokenizer.setReader(new StringReader(source));
+    assertTokenStreamContents(filterFactory.create(tokenizer), expected);
+  }
+
+  public void testSeparateSources() throws Exception {
+    Settings indexSettings = builder()
+        .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+        .put("index.analysis.filter.my_word_delimiter.type", "dynamic_word_delimiter")
+        .put("index.analysis.filter.other_word_delimiter.type", "dynamic_word_delimiter")
+        .put("index.analysis.filter.other_word_delimiter.protected_words_index", OTHER_INDEX_NAME)
+        .build();
+    TokenFilterFactory filterFactory = filterFactory(indexSettings, FILTER_NAME);
+    TokenFilterFactory otherFilterFactory = filterFactory(indexSettings, "other_word_delimiter");
+
+    createIndex(INDEX_NAME, OTHER_INDEX_NAME);
+    ensureGreen();
+    client().index(new IndexRequest().
+            setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE).
+            index(INDEX_NAME).
+            source("word", "1tb")).get();
+    client().index(new IndexRequest().
+            setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE).
+            index(OTHER_INDEX_NAME).
+            source("word", "16gb")).get();
+
+    Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
+
+    assertEquals(1, protectedWords(INDEX_NAME).size());
+    assertEquals(1, protectedWords(OTHER_INDEX_NAME).size());
+
+    String source = "1tb 16gb";
+    Tokenizer tokenizer = new WhitespaceTokenizer();
+    tokenizer.setReader(new StringReader(source));
+    assertTokenStreamContents(filterFactory.create(tokenizer), new String[]{"1tb", "16", "gb"});
+    tokenizer = new WhitespaceTokenizer();
+    tokenizer.setReader(new StringReader(source));
+    assertTokenStreamContents(otherFilterFactory.create(tokenizer), new String[]{"1", "tb", "16gb"});
+  }
+
+  public void testStats() throws Exception {
+    Settings indexSettings = builder()
+        .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+        .put("index.analysis.filter.my_word_delimiter.type", "dynamic_word_delimiter")
+        .build();
+    filterFactory(indexSettings, FILTER_NAME);
+
+    createIndex(INDEX_NAME);
+    ensureGreen();
+    client().index(new IndexRequest().
+            setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE).
+            index(INDEX_NAME).
+            source("word", "1tb")).get();
+
+    Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
+
+    WordDelimiterStatsResponse response = client()
+        .execute(WordDelimiterStatsAction.INSTANCE, new WordDelimiterStatsRequest()).get();
+    assertFalse(response.hasFailures());
+    assertEquals(1, response.getNodes().size());
+    ProtectedWordsStats stats = response.getNodes().get(0).getSources().get(INDEX_NAME);
+    assertEquals(1, stats.getSize());
+    assertThat(stats.getHeapBytes(), greaterThan(0L));
+    assertThat(stats.getRefreshes(), greaterThan(0L));
+    assertThat(stats.getLastRefresh(), greaterThan(0L));
+
+    // the index did not change since
+    assertBusy(() -> {
+      ProtectedWordsStats skipped = client().execute(WordDelimiterStatsAction.INSTANCE, new WordDelimiterStatsRequest())
+          .get().getNodes().get(0).getSources().get(INDEX_NAME);
+      assertThat(skipped.getSkipped(), greaterThan(0L));
+      assertEquals(1, skipped.getSize());
+    });
+  }
+
+  public void testBatchAnalyze() throws Exception {
+    createIndex(INDEX_NAME);
+    assertAcked(prepareCreate("products").setSettings(builder()
+        .put("index.analysis.filter.my_word_delimiter.type", "dynamic_word_delimiter")
+        .put("index.analysis.analyzer.my_analyzer.tokenizer", "standard")
+        .putList("index.analysis.analyzer.my_analyzer.filter", "my_word_delimiter")));
+    ensureGreen();
+    client().index(new IndexRequest().
+            setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE).
+            index(INDEX_NAME).
+            source("word", "1tb")).get();
+
+    Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
+
+    WordDelimiterAnalyzeResponse response = client().execute(WordDelimiterAnalyzeAction.INSTANCE,
+        new WordDelimiterAnalyzeRequest("products").analyzer("my_analyzer")
+            .texts(Arrays.asList("skliros 1tb", "wi-fi 2tb"))).get();
+    long version = ProtectedWordsSources.get(INDEX_NAME).version();
+    assertThat(version, greaterThan(0L));
+    assertEquals(2, response.getResults().size());
+    assertEquals(version, response.getResults().get(0).getVersion());
+    assertEquals(Arrays.asList("skliros", "1tb"), terms(response.getResults().get(0)));
+    assertEquals(version, response.getResults().get(1).getVersion());
+    assertEquals(Arrays.asList("wi", "fi", "2", "tb"), terms(response.getResults().get(1)));
+    WordDelimiterAnalyzeResponse.Token token = response.getResults().get(1).getTokens().get(2);
+    assertEquals(6, token.getStartOffset());
+    assertEquals(7, token.getEndOffset());
+    assertEquals(2, token.getPosition());
+
+    expectThrows(IllegalArgumentException.class, () -> client().execute(WordDelimiterAnalyzeAction.INSTANCE,
+        new WordDelimiterAnalyzeRequest("products").analyzer("standard")
+            .texts(Collections.singletonList("1tb"))).actionGet());
+  }
+
+  private static List<String> terms(WordDelimiterAnalyzeResponse.Result result) {
+    return result.getTokens().stream().map(WordDelimiterAnalyzeResponse.Token::getTerm).collect(Collectors.toList());
+  }
+
   public void testRemoveWordFromIndex() throws Exception {
     Settings indexSettings = builder()
         .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
@@ -90,7 +383,7 @@ public class ProtectedWordsIndexTests extends ESIntegTestCase {
 
     Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
 
-    Set<String> protectedWords = wordsListener.getProtectedWords();
+    ProtectedWordsDictionary protectedWords = protectedWords(INDEX_NAME);
     assertEquals(1, protectedWords.size());
 
     String source = "skliros 1tb";
@@ -106,8 +399,8 @@ public class ProtectedWordsIndexTests extends ESIntegTestCase {
 
     Thread.sleep(TimeValue.timeValueSeconds(2).getMillis());
 
-    protectedWords = wordsListener.getProtectedWords();
-    assertTrue(protectedWords.isEmpty());
+    protectedWords = protectedWords(INDEX_NAME);
+    assertEquals(0, protectedWords.size());
 
     expected = new String[]{"skliros", "1", "tb"};
     tokenizer = new WhitespaceTokenizer();
@@ -115,4 +408,8 @@ public class ProtectedWordsIndexTests extends ESIntegTestCase {
 
     assertTokenStreamContents(filterFactory.create(tokenizer), expected);
   }
+
+  private static ProtectedWordsDictionary protectedWords(String index) {
+    return ProtectedWordsSources.get(index).getProtectedWords();
+  }
 }
@@ -0,0 +1,68 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.elasticsearch.action.support.ProtectedWordsSources;
+import org.elasticsearch.action.support.replication.ClusterStateCreationUtils;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.ShardRoutingState;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.module.ProtectedWordsOwners;
+import org.elasticsearch.test.ESTestCase;
+
+public class ProtectedWordsOwnersTests extends ESTestCase {
+
+  private static final String SOURCE = "owned_words";
+
+  public void testReleaseOwnersWithoutLocalShards() {
+    ProtectedWordsOwners owners = new ProtectedWordsOwners();
+    ClusterState empty = ClusterStateCreationUtils.stateWithNoShard();
+    ClusterState remote = withUUID(ClusterStateCreationUtils.state("remote", false, ShardRoutingState.STARTED), "remote");
+    ClusterState local = withUUID(ClusterStateCreationUtils.state("local", true, ShardRoutingState.STARTED), "local");
+    String remoteOwner = remote.metaData().index("remote").getIndexUUID();
+    String localOwner = local.metaData().index("local").getIndexUUID();
+
+    try {
+      // e.g. the analyzers built to verify the metadata of an index allocated elsewhere
+      ProtectedWordsSources.acquire(SOURCE, remoteOwner);
+      ProtectedWordsSources.acquire(SOURCE, localOwner);
+      // filters built for no index of the cluster are left alone
+      ProtectedWordsSources.acquire(SOURCE, "unknown");
+
+      owners.clusterChanged(new ClusterChangedEvent("test", remote, empty));
+      assertFalse(ProtectedWordsSources.owners().contains(remoteOwner));
+      assertTrue(ProtectedWordsSources.owners().contains(localOwner));
+      assertTrue(ProtectedWordsSources.owners().contains("unknown"));
+
+      owners.clusterChanged(new ClusterChangedEvent("test", local, empty));
+      assertTrue(ProtectedWordsSources.owners().contains(localOwner));
+
+      ClusterState deleted = ClusterState.builder(local)
+          .metaData(MetaData.builder(local.metaData()).remove("local"))
+          .routingTable(RoutingTable.builder(local.routingTable()).remove("local").build())
+          .build();
+      owners.clusterChanged(new ClusterChangedEvent("test", deleted, local));
+      assertFalse(ProtectedWordsSources.owners().contains(localOwner));
+      assertNotNull(ProtectedWordsSources.get(SOURCE));
+
+      ProtectedWordsSources.release("unknown");
+      assertNull(ProtectedWordsSources.get(SOURCE));
+    } finally {
+      ProtectedWordsSources.release(remoteOwner);
+      ProtectedWordsSources.release(localOwner);
+      ProtectedWordsSources.release("unknown");
+    }
+  }
+
+  private static ClusterState withUUID(ClusterState state, String index) {
+    IndexMetaData indexMetaData = state.metaData().index(index);
+    Settings settings = Settings.builder().put(indexMetaData.getSettings())
+        .put(IndexMetaData.SETTING_INDEX_UUID, UUIDs.randomBase64UUID()).build();
+    return ClusterState.builder(state)
+        .metaData(MetaData.builder(state.metaData()).put(IndexMetaData.builder(indexMetaData).settings(settings)))
+        .build();
+  }
+}
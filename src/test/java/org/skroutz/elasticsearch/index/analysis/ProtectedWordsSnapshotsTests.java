@@ -0,0 +1,106 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.elasticsearch.action.support.ProtectedWordsSources;
+import org.elasticsearch.action.support.WordDelimiterActionListener;
+import org.elasticsearch.module.ProtectedWordsSnapshots;
+import org.elasticsearch.test.ESTestCase;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ProtectedWordsSnapshotsTests extends ESTestCase {
+
+  public void testWriteAndRestore() throws Exception {
+    Path dataPath = createTempDir();
+    ProtectedWordsDictionary.Format format = randomFrom(ProtectedWordsDictionary.Format.values());
+    ProtectedWordsDictionary.Builder builder = format.newBuilder();
+    for (String word : Arrays.asList("1tb", "4g", "κινητό5")) {
+      builder.add(word);
+    }
+    builder.add("xl", Collections.singletonList("fashion"));
+    builder.addPhrase("galaxy s23");
+    builder.addTypeMapping("$ => DIGIT");
+    WordDelimiterActionListener words = new WordDelimiterActionListener();
+    words.setPublished(1, builder.build());
+
+    try (ProtectedWordsSnapshots snapshots = new ProtectedWordsSnapshots(dataPath)) {
+      snapshots.write(Collections.singletonMap("protected_words", words));
+
+      WordDelimiterActionListener restored = new WordDelimiterActionListener();
+      restored.setFormat(randomFrom(ProtectedWordsDictionary.Format.values()));
+      snapshots.restore("protected_words", restored);
+      assertEquals(4, restored.getProtectedWords().size());
+      for (String word : Arrays.asList("1tb", "4g", "κινητό5")) {
+        assertTrue(word, restored.getProtectedWords().contains(word.toCharArray(), 0, word.length()));
+      }
+      ProtectedWordsDictionary restoredWords = restored.getProtectedWords();
+      assertNotEquals(0, restoredWords.namespaces("xl".toCharArray(), 0, 2)
+          & restoredWords.namespaceMask(Collections.singletonList("fashion")));
+      assertEquals(0, restoredWords.namespaces("xl".toCharArray(), 0, 2)
+          & restoredWords.namespaceMask(Collections.singletonList("electronics")));
+      List<String> phrases = new ArrayList<>();
+      restoredWords.phrases().forEach(phrases::add);
+      assertEquals(Collections.singletonList("galaxy s23"), phrases);
+      assertEquals(1, restoredWords.typeMappings().size());
+
+      // nothing saved for this one
+      WordDelimiterActionListener missing = new WordDelimiterActionListener();
+      snapshots.restore("other_words", missing);
+      assertEquals(0, missing.getProtectedWords().size());
+    }
+  }
+
+  public void testRestoreInBackground() throws Exception {
+    Path dataPath = createTempDir();
+    WordDelimiterActionListener words = new WordDelimiterActionListener();
+    words.setPublished(1, ProtectedWordsDictionary.Format.HASH.copyOf(
+        LayeredDictionary.withWords(CharArraySetDictionary.EMPTY, Arrays.asList("1tb", "4g"))));
+
+    try (ProtectedWordsSnapshots snapshots = new ProtectedWordsSnapshots(dataPath)) {
+      snapshots.write(Collections.singletonMap("restored_words", words));
+
+      List<Runnable> pending = new ArrayList<>();
+      ProtectedWordsSources.setRestorer(snapshots::restore);
+      ProtectedWordsSources.setExecutor(pending::add);
+      try {
+        // registered right away, empty until restored. A source no other test uses, the registry is shared
+        WordDelimiterActionListener acquired = ProtectedWordsSources.acquire("restored_words", "owner");
+        assertSame(acquired, ProtectedWordsSources.get("restored_words"));
+        assertEquals(0, acquired.getProtectedWords().size());
+        assertEquals(1, pending.size());
+
+        pending.get(0).run();
+        assertEquals(2, acquired.getProtectedWords().size());
+      } finally {
+        ProtectedWordsSources.setRestorer((index, w) -> {});
+        ProtectedWordsSources.setExecutor(Runnable::run);
+        ProtectedWordsSources.release("owner");
+      }
+    }
+  }
+
+  public void testCorruptSnapshotIsIgnored() throws Exception {
+    Path dataPath = createTempDir();
+    WordDelimiterActionListener words = new WordDelimiterActionListener();
+    words.setPublished(1, ProtectedWordsDictionary.Format.HASH.copyOf(
+        LayeredDictionary.withWords(CharArraySetDictionary.EMPTY, Arrays.asList("1tb", "4g"))));
+
+    try (ProtectedWordsSnapshots snapshots = new ProtectedWordsSnapshots(dataPath)) {
+      snapshots.write(Collections.singletonMap("protected_words", words));
+    }
+    Path file = dataPath.resolve(ProtectedWordsSnapshots.DIRECTORY).resolve("protected_words.words");
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[bytes.length / 2] ^= 0x1;
+    Files.write(file, bytes);
+
+    try (ProtectedWordsSnapshots snapshots = new ProtectedWordsSnapshots(dataPath)) {
+      WordDelimiterActionListener restored = new WordDelimiterActionListener();
+      snapshots.restore("protected_words", restored);
+      assertEquals(0, restored.getProtectedWords().size());
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.ActionType;
+import org.elasticsearch.action.analyze.WordDelimiterAnalyzeRequest;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.rest.action.RestWordDelimiterAnalyzeAction;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.rest.FakeRestChannel;
+import org.elasticsearch.test.rest.FakeRestRequest;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.usage.UsageService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RestWordDelimiterAnalyzeActionTests extends ESTestCase {
+
+  private ThreadPool threadPool;
+  private CapturingClient client;
+  private RestController controller;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    threadPool = new TestThreadPool(getTestName());
+    client = new CapturingClient(threadPool);
+    controller = new RestController(Collections.emptySet(), null, client, new NoneCircuitBreakerService(),
+        new UsageService());
+    controller.registerHandler(new RestWordDelimiterAnalyzeAction());
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    terminate(threadPool);
+    super.tearDown();
+  }
+
+  public void testTexts() {
+    FakeRestChannel channel = dispatch("{\"analyzer\": \"my_analyzer\", \"texts\": [\"wi-fi\", \"usb-c\"]}");
+    assertEquals(0, channel.errors().get());
+    assertEquals(1, client.requests.size());
+    assertEquals("my_analyzer", client.requests.get(0).analyzer());
+    assertEquals(Arrays.asList("wi-fi", "usb-c"), client.requests.get(0).texts());
+
+    assertBadRequest(dispatch("{\"texts\": [\"wi-fi\", null]}"));
+    assertBadRequest(dispatch("{\"texts\": [\"wi-fi\", 42]}"));
+    assertBadRequest(dispatch("{\"texts\": [[\"wi-fi\"]]}"));
+    assertEquals(1, client.requests.size());
+  }
+
+  public void testNewlineDelimitedTexts() {
+    FakeRestChannel channel = dispatch("{\"text\": \"wi-fi\"}\n{\"text\": \"usb-c\"}\n");
+    assertEquals(0, channel.errors().get());
+    assertEquals(1, client.requests.size());
+    assertEquals(Arrays.asList("wi-fi", "usb-c"), client.requests.get(0).texts());
+
+    assertBadRequest(dispatch("{\"text\": \"wi-fi\"}\n{\"text\": null}\n"));
+    assertBadRequest(dispatch("{\"text\": \"wi-fi\"}\n{\"text\": {\"value\": \"usb-c\"}}\n"));
+    assertEquals(1, client.requests.size());
+  }
+
+  private FakeRestChannel dispatch(String body) {
+    RestRequest request = new FakeRestRequest.Builder(xContentRegistry())
+        .withMethod(RestRequest.Method.POST)
+        .withPath("/products/_dynamic_word_delimiter/analyze")
+        .withContent(new BytesArray(body), XContentType.JSON)
+        .build();
+    FakeRestChannel channel = new FakeRestChannel(request, false, 1);
+    controller.dispatchRequest(request, channel, new ThreadContext(Settings.EMPTY));
+    return channel;
+  }
+
+  private static void assertBadRequest(FakeRestChannel channel) {
+    assertEquals(1, channel.errors().get());
+    assertEquals(RestStatus.BAD_REQUEST, channel.capturedResponse().status());
+  }
+
+  /**
+   * Keeps the batches instead of sending them.
+   */
+  private static final class CapturingClient extends NodeClient {
+    final List<WordDelimiterAnalyzeRequest> requests = new ArrayList<>();
+
+    CapturingClient(ThreadPool threadPool) {
+      super(Settings.EMPTY, threadPool);
+    }
+
+    @Override
+    public <Request extends ActionRequest, Response extends ActionResponse> void doExecute(ActionType<Response> action,
+                                                                                          Request request,
+                                                                                          ActionListener<Response> listener) {
+      requests.add((WordDelimiterAnalyzeRequest) request);
+    }
+  }
+}
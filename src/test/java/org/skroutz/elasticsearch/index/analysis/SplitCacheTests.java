@@ -0,0 +1,106 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.elasticsearch.action.support.SplitCacheStats;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class SplitCacheTests extends ESTestCase {
+
+  private static final List<String> TERMS = Arrays.asList("wi-fi", "PowerShot", "500-42", "sm-g991b", "O'Neil's",
+      "--", "j2se", "usb-c", "Wi-Fi-4000", "the", "4g", "ab", "κινητό-5g", "x");
+  private static final int[] FLAGS = {WordDelimiterFilter.GENERATE_WORD_PARTS, WordDelimiterFilter.GENERATE_NUMBER_PARTS,
+      WordDelimiterFilter.CATENATE_WORDS, WordDelimiterFilter.CATENATE_NUMBERS, WordDelimiterFilter.CATENATE_ALL,
+      WordDelimiterFilter.SPLIT_ON_CASE_CHANGE, WordDelimiterFilter.PRESERVE_ORIGINAL,
+      WordDelimiterFilter.SPLIT_ON_NUMERICS, WordDelimiterFilter.STEM_ENGLISH_POSSESSIVE};
+
+  public void testSameTokensAsWithoutCache() throws IOException {
+    for (int round = 0; round < 50; round++) {
+      int flags = 0;
+      for (int flag : FLAGS) {
+        if (randomBoolean()) {
+          flags |= flag;
+        }
+      }
+      SplitCache cache = new SplitCache(randomIntBetween(1, 20), null);
+
+      for (int text = 0; text < 10; text++) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = randomIntBetween(1, 12); i > 0; i--) {
+          builder.append(randomFrom(TERMS)).append(' ');
+        }
+        String source = builder.toString();
+        assertEquals("flags " + flags + ": " + source, analyze(source, flags, null), analyze(source, flags, cache));
+      }
+    }
+  }
+
+  public void testStats() throws IOException {
+    SplitCache cache = new SplitCache(10, null);
+    int flags = WordDelimiterFilter.GENERATE_WORD_PARTS | WordDelimiterFilter.GENERATE_NUMBER_PARTS;
+    assertEquals(Arrays.asList("wi 0:2 +1 word", "fi 3:5 +1 word", "phone 6:11 +1 word", "wi 12:14 +1 word",
+        "fi 15:17 +1 word"), analyze("wi-fi phone wi-fi", flags, cache));
+
+    SplitCacheStats stats = cache.stats();
+    assertEquals(1, stats.getSize());
+    assertEquals(1, stats.getHits());
+    assertEquals(1, stats.getMisses());
+    assertThat(stats.getHitRate(), greaterThan(0.4));
+  }
+
+  public void testBoundedSize() throws IOException {
+    SplitCache cache = new SplitCache(8, null);
+    int flags = WordDelimiterFilter.GENERATE_WORD_PARTS | WordDelimiterFilter.GENERATE_NUMBER_PARTS;
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      // the hot term is hit between every new one, and is never the victim of its set
+      builder.append("wi-fi sm-").append(i).append(' ');
+    }
+    analyze(builder.toString(), flags, cache);
+
+    SplitCacheStats stats = cache.stats();
+    assertThat(stats.getSize(), lessThanOrEqualTo(8));
+    assertEquals(99, stats.getHits());
+    assertEquals(101, stats.getMisses());
+  }
+
+  /**
+   * @return the term, offsets, position increment and type of every token
+   */
+  private static List<String> analyze(String source, int flags, SplitCache cache) throws IOException {
+    WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+    tokenizer.setReader(new StringReader(source));
+    // leaves position gaps before the following tokens
+    TokenStream stopped = new StopFilter(tokenizer, new CharArraySet(Arrays.asList("the"), false));
+    List<String> tokens = new ArrayList<>();
+    try (TokenStream stream = new WordDelimiterFilter(stopped, WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE, flags,
+        null, null, cache, 1)) {
+      CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+      OffsetAttribute offset = stream.addAttribute(OffsetAttribute.class);
+      PositionIncrementAttribute posInc = stream.addAttribute(PositionIncrementAttribute.class);
+      TypeAttribute type = stream.addAttribute(TypeAttribute.class);
+      stream.reset();
+      while (stream.incrementToken()) {
+        tokens.add(term + " " + offset.startOffset() + ":" + offset.endOffset() + " +" + posInc.getPositionIncrement()
+            + " " + type.type());
+      }
+      stream.end();
+    }
+    return tokens;
+  }
+}
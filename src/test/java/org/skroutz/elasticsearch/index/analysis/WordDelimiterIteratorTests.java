@@ -0,0 +1,55 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.elasticsearch.test.ESTestCase;
+
+public class WordDelimiterIteratorTests extends ESTestCase {
+
+  public void testBMPTable() {
+    byte[] table = WordDelimiterIterator.BMP_WORD_DELIM_TABLE;
+    assertEquals(65536, table.length);
+    for (int ch = 0; ch < table.length; ch++) {
+      byte expected = ch < WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE.length ?
+          WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE[ch] : WordDelimiterIterator.getType(ch);
+      assertEquals("char " + ch, expected, table[ch]);
+    }
+    assertEquals(WordDelimiterFilter.LOWER, table['α']);
+    assertEquals(WordDelimiterFilter.UPPER, table['Ω']);
+    assertEquals(WordDelimiterFilter.ALPHA | WordDelimiterFilter.DIGIT, table[0xD83D]);
+  }
+
+  public void testPlainWord() {
+    WordDelimiterIterator iterator = new WordDelimiterIterator(WordDelimiterIterator.BMP_WORD_DELIM_TABLE, true, true, true);
+    for (String word : new String[] {"phone", "USB", "Samsung", "2020", "κινητό", "ΦΑΚΟΣ", ""}) {
+      assertTrue(word, isPlainWord(iterator, word));
+    }
+    for (String word : new String[] {"iPhone", "j2se", "4g", "wi-fi", "O'Neil's", "usb3"}) {
+      assertFalse(word, isPlainWord(iterator, word));
+    }
+    WordDelimiterIterator noSplits = new WordDelimiterIterator(WordDelimiterIterator.BMP_WORD_DELIM_TABLE, false, false, true);
+    assertTrue(isPlainWord(noSplits, "iPhone4"));
+    assertFalse(isPlainWord(noSplits, "wi-fi"));
+  }
+
+  public void testPlainWordsAreNotSplit() {
+    String chars = "abcXYZ019αβΩ-'._é";
+    for (int i = 0; i < 1000; i++) {
+      WordDelimiterIterator iterator = new WordDelimiterIterator(
+          randomFrom(WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE, WordDelimiterIterator.BMP_WORD_DELIM_TABLE),
+          randomBoolean(), randomBoolean(), randomBoolean());
+      char[] text = new char[randomIntBetween(1, 8)];
+      for (int j = 0; j < text.length; j++) {
+        text[j] = chars.charAt(randomIntBetween(0, chars.length() - 1));
+      }
+      if (iterator.isPlainWord(text, text.length)) {
+        iterator.setText(text, text.length);
+        iterator.next();
+        assertEquals(new String(text), 0, iterator.current);
+        assertEquals(new String(text), text.length, iterator.end);
+      }
+    }
+  }
+
+  private static boolean isPlainWord(WordDelimiterIterator iterator, String word) {
+    return iterator.isPlainWord(word.toCharArray(), word.length());
+  }
+}
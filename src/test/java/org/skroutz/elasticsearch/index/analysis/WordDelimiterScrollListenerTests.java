@@ -0,0 +1,38 @@
+package org.skroutz.elasticsearch.index.analysis;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.action.support.WordDelimiterActionListener;
+import org.elasticsearch.action.support.WordDelimiterScrollListener;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class WordDelimiterScrollListenerTests extends ESTestCase {
+
+  public void testFailedShardsFailTheLoad() {
+    WordDelimiterActionListener words = new WordDelimiterActionListener();
+    words.setPublished(1, ProtectedWordsDictionary.Format.HASH.copyOf(
+        LayeredDictionary.withWords(CharArraySetDictionary.EMPTY, Arrays.asList("1tb", "4g"))));
+
+    ActionListener<SearchResponse> pages = words.startLoad(true);
+    WordDelimiterScrollListener scroll = new WordDelimiterScrollListener(null, null, null, TimeValue.timeValueMinutes(1),
+        pages, ActionListener.wrap(r -> {
+          if (words.finishLoad(pages)) {
+            fail("the load should have failed");
+          }
+        }, words::onFailure));
+    // one of two shards relocating, its words are missing from the page
+    scroll.onResponse(new SearchResponse(InternalSearchResponse.empty(), null, 2, 1, 0, 1,
+        new ShardSearchFailure[]{new ShardSearchFailure(new IOException("relocating"))}, SearchResponse.Clusters.EMPTY));
+
+    assertEquals(1, words.stats().getFailures());
+    // the words loaded before are kept
+    assertEquals(2, words.getProtectedWords().size());
+    assertEquals(1, words.version());
+  }
+}
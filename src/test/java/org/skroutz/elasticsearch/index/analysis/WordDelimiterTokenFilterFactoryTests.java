@@ -19,6 +19,8 @@
 package org.skroutz.elasticsearch.index.analysis;
 
 import org.elasticsearch.Version;
+import org.elasticsearch.action.support.ProtectedWordsSources;
+import org.elasticsearch.action.support.SplitCaches;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
@@ -202,4 +204,39 @@ public class WordDelimiterTokenFilterFactoryTests extends ESTokenStreamTestCase
     tokenizer.setReader(new StringReader(nonAlphanum));
     assertTokenStreamContents(filterFactory.create(tokenizer), expectedNonAlphanum);
   }
+
+  public void testAnalyzerWithoutIndexIsNotRegistered() throws IOException {
+    Settings indexSettings = Settings.builder()
+        .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+        .put(IndexMetaData.SETTING_INDEX_UUID, IndexMetaData.INDEX_UUID_NA_VALUE)
+        .put("index.analysis.filter.my_word_delimiter.type", TYPE_NAME)
+        .put("index.analysis.filter.my_word_delimiter.protected_words_index", "transient_words")
+        .put("index.analysis.filter.my_word_delimiter.split_cache_size", 10)
+        .build();
+    // built with the _na_ UUID, like the custom analyzers of _analyze requests, which are never released
+    TokenFilterFactory filterFactory = filterFactory(indexSettings, FILTER_NAME);
+    assertNotNull(((WordDelimiterTokenFilterFactory) filterFactory).getDynamicWords());
+    assertNull(ProtectedWordsSources.get("transient_words"));
+    assertFalse(SplitCaches.active().containsKey("test/" + FILTER_NAME));
+
+    Tokenizer tokenizer = new WhitespaceTokenizer();
+    tokenizer.setReader(new StringReader("wi-fi"));
+    assertTokenStreamContents(filterFactory.create(tokenizer), new String[]{"wi", "fi"});
+  }
+
+  public void testWordsFileOutsideConfigIsRejected() throws IOException {
+    String home = createTempDir().toString();
+    for (String wordsFile : new String[]{"../protected_words.txt", "words/../../protected_words.txt",
+        createTempDir().resolve("protected_words.txt").toAbsolutePath().toString()}) {
+      Settings indexSettings = Settings.builder()
+          .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+          .put(Environment.PATH_HOME_SETTING.getKey(), home)
+          .put("index.analysis.filter.my_word_delimiter.type", TYPE_NAME)
+          .put("index.analysis.filter.my_word_delimiter.protected_words_file", wordsFile)
+          .build();
+      IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+          () -> filterFactory(indexSettings, FILTER_NAME));
+      assertTrue(e.getMessage(), e.getMessage().contains("must be under the config directory"));
+    }
+  }
 }